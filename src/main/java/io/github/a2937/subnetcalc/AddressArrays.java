@@ -0,0 +1,424 @@
+package io.github.a2937.subnetcalc;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Sorting, deduplication and prefix helpers for
+ * arrays of IPv4 addresses stored as ints.
+ * <p>
+ * Every address from 128.0.0.0 up is negative as an int, so the
+ * usual signed ordering puts them before 0.0.0.0. Everything in here
+ * orders addresses as unsigned values instead.
+ */
+public final class AddressArrays
+{
+    /**
+     * Orders boxed addresses as unsigned values.
+     */
+    public static final Comparator<Integer> UNSIGNED_ORDER = Integer::compareUnsigned;
+
+    /*
+     * Below SMALL_SORT_SIZE the digit counts cost more than they save, so
+     * the sign bit is flipped and Arrays.sort is used instead. From
+     * WIDE_DIGIT_SIZE on two passes over 16 bit digits beat four over 8 bits.
+     * The least significant digit sorts need a scratch copy of the input,
+     * so from IN_PLACE_SORT_SIZE on, where that copy is 256 MB or more,
+     * the in place sorts are used instead.
+     */
+    private static final int SMALL_SORT_SIZE = 1 << 10;
+    private static final int WIDE_DIGIT_SIZE = 1 << 18;
+    private static final int PARALLEL_SORT_SIZE = 1 << 21;
+    private static final int IN_PLACE_SORT_SIZE = 1 << 26;
+
+    private AddressArrays()
+    {
+    }
+
+    /**
+     * Compares two addresses as unsigned values.
+     *
+     * @param addressOne the first address
+     * @param addressTwo the second address
+     * @return a negative number, zero or a positive number as the first address is lower, equal or higher
+     */
+    public static int compare(int addressOne, int addressTwo)
+    {
+        return Integer.compareUnsigned(addressOne, addressTwo);
+    }
+
+    /**
+     * Checks whether an address lies between two addresses, both included.
+     *
+     * @param address the address
+     * @param start   the first address of the range
+     * @param end     the last address of the range
+     * @return whether the address is in the range
+     */
+    public static boolean isInRange(int address, int start, int end)
+    {
+        return address - start + Integer.MIN_VALUE <= end - start + Integer.MIN_VALUE;
+    }
+
+    /**
+     * Sorts addresses in unsigned order with a least significant
+     * digit radix sort. That needs a scratch array as large as the
+     * input, so very large arrays are sorted with sortInPlace instead.
+     *
+     * @param addresses the addresses
+     */
+    public static void sort(int[] addresses)
+    {
+        sort(addresses, 0, addresses.length);
+    }
+
+    /**
+     * Sorts part of an array of addresses in unsigned order.
+     *
+     * @param addresses the addresses
+     * @param from      the first index to sort
+     * @param to        the index after the last one to sort
+     */
+    public static void sort(int[] addresses, int from, int to)
+    {
+        int length = to - from;
+        if(length < SMALL_SORT_SIZE)
+        {
+            flipSignBits(addresses, from, to);
+            Arrays.sort(addresses, from, to);
+            flipSignBits(addresses, from, to);
+            return;
+        }
+        if(length >= IN_PLACE_SORT_SIZE)
+        {
+            americanFlagSort(addresses, from, to, 24);
+            return;
+        }
+        radixSort(addresses, from, length, length >= WIDE_DIGIT_SIZE ? 16 : 8);
+    }
+
+    /**
+     * Sorts addresses in unsigned order without a scratch copy, using a
+     * most significant digit radix sort that swaps every address straight
+     * into its bucket (American flag sort). It is slower than sort but
+     * only needs a few small count arrays on top of the input.
+     *
+     * @param addresses the addresses
+     */
+    public static void sortInPlace(int[] addresses)
+    {
+        americanFlagSort(addresses, 0, addresses.length, 24);
+    }
+
+    /**
+     * Sorts addresses in unsigned order without a scratch copy
+     * using the common fork join pool. The first digit is sorted in
+     * place on the calling thread and the 256 buckets it leaves
+     * are then sorted in parallel.
+     *
+     * @param addresses the addresses
+     */
+    public static void parallelSortInPlace(int[] addresses)
+    {
+        parallelSortInPlace(addresses, ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    static void parallelSortInPlace(int[] addresses, int parallelism)
+    {
+        int length = addresses.length;
+        if(length < PARALLEL_SORT_SIZE || parallelism < 2)
+        {
+            sortInPlace(addresses);
+            return;
+        }
+        int[] bucketStarts = distribute(addresses, 0, length, 24);
+        IntStream.range(0, 256).parallel().forEach(bucket ->
+                americanFlagSort(addresses, bucketStarts[bucket], bucketStarts[bucket + 1], 16));
+    }
+
+    /**
+     * Sorts addresses in unsigned order using the common fork join pool.
+     * Each pass counts digits per chunk in parallel and then every
+     * chunk moves its addresses to their own precomputed slots, so the
+     * result is the same as the sequential sort. Like sort it needs a
+     * scratch copy of the input, so very large arrays are sorted with
+     * parallelSortInPlace instead.
+     *
+     * @param addresses the addresses
+     */
+    public static void parallelSort(int[] addresses)
+    {
+        parallelSort(addresses, ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /*
+     * Takes the parallelism so tests can run the chunked passes
+     * even on machines where the common pool has a single thread.
+     */
+    static void parallelSort(int[] addresses, int parallelism)
+    {
+        int length = addresses.length;
+        if(length < PARALLEL_SORT_SIZE || parallelism < 2)
+        {
+            sort(addresses);
+            return;
+        }
+        if(length >= IN_PLACE_SORT_SIZE)
+        {
+            parallelSortInPlace(addresses, parallelism);
+            return;
+        }
+        int chunks = parallelism * 4;
+        int chunkSize = (length + chunks - 1) / chunks;
+        int[] buffer = new int[length];
+        int[] source = addresses;
+        int[] target = buffer;
+        int[][] offsets = new int[chunks][1 << 16];
+        for (int shift = 0; shift < 32; shift += 16)
+        {
+            final int[] in = source;
+            final int[] out = target;
+            final int digitShift = shift;
+            IntStream.range(0, chunks).parallel().forEach(chunk ->
+            {
+                int[] counts = offsets[chunk];
+                Arrays.fill(counts, 0);
+                int end = Math.min(length, (chunk + 1) * chunkSize);
+                for (int i = chunk * chunkSize; i < end; i++)
+                {
+                    counts[(in[i] >>> digitShift) & 0xFFFF]++;
+                }
+            });
+            int firstDigit = (in[0] >>> shift) & 0xFFFF;
+            int firstDigitCount = 0;
+            for (int[] counts : offsets)
+            {
+                firstDigitCount += counts[firstDigit];
+            }
+            if(firstDigitCount == length)
+            {
+                continue;
+            }
+            int position = 0;
+            for (int digit = 0; digit < 1 << 16; digit++)
+            {
+                for (int chunk = 0; chunk < chunks; chunk++)
+                {
+                    int count = offsets[chunk][digit];
+                    offsets[chunk][digit] = position;
+                    position += count;
+                }
+            }
+            IntStream.range(0, chunks).parallel().forEach(chunk ->
+            {
+                int[] next = offsets[chunk];
+                int end = Math.min(length, (chunk + 1) * chunkSize);
+                for (int i = chunk * chunkSize; i < end; i++)
+                {
+                    int address = in[i];
+                    out[next[(address >>> digitShift) & 0xFFFF]++] = address;
+                }
+            });
+            source = out;
+            target = in;
+        }
+        if(source != addresses)
+        {
+            System.arraycopy(source, 0, addresses, 0, length);
+        }
+    }
+
+    /**
+     * Removes repeated addresses from a sorted array by moving
+     * the distinct ones to the front.
+     *
+     * @param sortedAddresses the sorted addresses
+     * @return the amount of distinct addresses now at the front
+     */
+    public static int dedupSorted(int[] sortedAddresses)
+    {
+        return dedupSorted(sortedAddresses, sortedAddresses.length);
+    }
+
+    /**
+     * Removes repeated addresses from the first part of a sorted array.
+     *
+     * @param sortedAddresses the sorted addresses
+     * @param length          the amount of addresses in use
+     * @return the amount of distinct addresses now at the front
+     */
+    public static int dedupSorted(int[] sortedAddresses, int length)
+    {
+        if(length == 0)
+        {
+            return 0;
+        }
+        int distinct = 1;
+        for (int i = 1; i < length; i++)
+        {
+            int address = sortedAddresses[i];
+            sortedAddresses[distinct] = address;
+            distinct += address != sortedAddresses[distinct - 1] ? 1 : 0;
+        }
+        return distinct;
+    }
+
+    /**
+     * Gets the length of the prefix every address in
+     * a sorted array shares. Only the lowest and the highest
+     * address have to be compared for that.
+     *
+     * @param sortedAddresses the sorted addresses, at least one
+     * @return the shared prefix length
+     */
+    public static int commonPrefixLength(int[] sortedAddresses)
+    {
+        return IPv4Util.commonPrefixLength(sortedAddresses[0], sortedAddresses[sortedAddresses.length - 1]);
+    }
+
+    /**
+     * Gets the shared prefix length of every pair
+     * of neighbouring addresses in a sorted array.
+     *
+     * @param sortedAddresses the sorted addresses
+     * @param prefixLengths   where the prefix length of addresses i and i + 1 is written to position i
+     */
+    public static void commonPrefixLengths(int[] sortedAddresses, int[] prefixLengths)
+    {
+        if(prefixLengths.length < sortedAddresses.length - 1)
+        {
+            throw new IllegalArgumentException("The result array needs room for one less than the amount of addresses.");
+        }
+        for (int i = 0; i < sortedAddresses.length - 1; i++)
+        {
+            prefixLengths[i] = Integer.numberOfLeadingZeros(sortedAddresses[i] ^ sortedAddresses[i + 1]);
+        }
+    }
+
+    /*
+     * Counts the digits of every pass in a single read of the input,
+     * then skips passes where every address has the same digit.
+     */
+    private static void radixSort(int[] addresses, int from, int length, int digitBits)
+    {
+        int passes = 32 / digitBits;
+        int radix = 1 << digitBits;
+        int mask = radix - 1;
+        int[][] counts = new int[passes][radix];
+        for (int i = from; i < from + length; i++)
+        {
+            int address = addresses[i];
+            for (int pass = 0; pass < passes; pass++)
+            {
+                counts[pass][(address >>> (pass * digitBits)) & mask]++;
+            }
+        }
+
+        int[] source = addresses;
+        int sourceFrom = from;
+        int[] target = new int[length];
+        int targetFrom = 0;
+        for (int pass = 0; pass < passes; pass++)
+        {
+            int shift = pass * digitBits;
+            int[] next = counts[pass];
+            if(next[(source[sourceFrom] >>> shift) & mask] == length)
+            {
+                continue;
+            }
+            int position = targetFrom;
+            for (int digit = 0; digit < radix; digit++)
+            {
+                int count = next[digit];
+                next[digit] = position;
+                position += count;
+            }
+            for (int i = sourceFrom; i < sourceFrom + length; i++)
+            {
+                int address = source[i];
+                target[next[(address >>> shift) & mask]++] = address;
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+            int swapFrom = sourceFrom;
+            sourceFrom = targetFrom;
+            targetFrom = swapFrom;
+        }
+        if(source != addresses)
+        {
+            System.arraycopy(source, sourceFrom, addresses, from, length);
+        }
+    }
+
+    private static void americanFlagSort(int[] addresses, int from, int to, int shift)
+    {
+        if(to - from < SMALL_SORT_SIZE)
+        {
+            flipSignBits(addresses, from, to);
+            Arrays.sort(addresses, from, to);
+            flipSignBits(addresses, from, to);
+            return;
+        }
+        int[] bucketStarts = distribute(addresses, from, to, shift);
+        if(shift == 0)
+        {
+            return;
+        }
+        for (int bucket = 0; bucket < 256; bucket++)
+        {
+            if(bucketStarts[bucket + 1] - bucketStarts[bucket] > 1)
+            {
+                americanFlagSort(addresses, bucketStarts[bucket], bucketStarts[bucket + 1], shift - 8);
+            }
+        }
+    }
+
+    /*
+     * Moves every address into the bucket of its 8 bit digit at shift by
+     * following cycles of swaps, and returns where each bucket starts
+     * with the end of the last one at index 256.
+     */
+    private static int[] distribute(int[] addresses, int from, int to, int shift)
+    {
+        int[] bucketStarts = new int[257];
+        for (int i = from; i < to; i++)
+        {
+            bucketStarts[((addresses[i] >>> shift) & 0xFF) + 1]++;
+        }
+        bucketStarts[0] = from;
+        for (int bucket = 0; bucket < 256; bucket++)
+        {
+            bucketStarts[bucket + 1] += bucketStarts[bucket];
+        }
+        int[] next = Arrays.copyOf(bucketStarts, 256);
+        for (int bucket = 0; bucket < 256; bucket++)
+        {
+            int end = bucketStarts[bucket + 1];
+            while (next[bucket] < end)
+            {
+                int address = addresses[next[bucket]];
+                int digit = (address >>> shift) & 0xFF;
+                while (digit != bucket)
+                {
+                    int displaced = addresses[next[digit]];
+                    addresses[next[digit]++] = address;
+                    address = displaced;
+                    digit = (address >>> shift) & 0xFF;
+                }
+                addresses[next[bucket]++] = address;
+            }
+        }
+        return bucketStarts;
+    }
+
+    private static void flipSignBits(int[] addresses, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            addresses[i] ^= Integer.MIN_VALUE;
+        }
+    }
+}
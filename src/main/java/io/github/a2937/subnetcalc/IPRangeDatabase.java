@@ -0,0 +1,430 @@
+package io.github.a2937.subnetcalc;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read only map from IPv4 address ranges to values,
+ * such as an ASN, a region or a tenant.
+ * <p>
+ * Ranges cannot overlap. They are kept in parallel int arrays
+ * sorted by their first address, with every distinct value stored
+ * once and referenced by its value index. Addresses are stored with
+ * their sign bit flipped so that ordinary int comparisons give the
+ * unsigned order and 128.0.0.0 and above sort after 127.255.255.255.
+ * <p>
+ * Single lookups search a copy of the first addresses laid out in
+ * Eytzinger (breadth first) order, which touches the same few cache
+ * lines at the top of the tree for every query and needs no
+ * unpredictable branches. Bulk lookups sort the batch first and
+ * sweep through the ranges in order instead.
+ *
+ * @param <V> the type of the values
+ */
+public final class IPRangeDatabase<V>
+{
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] valueIndexes;
+    private final List<V> values;
+
+    /*
+     * The first addresses in Eytzinger order starting at index 1, so the
+     * children of node k are 2k and 2k + 1. Only the starts are copied so
+     * sixteen nodes fit in a cache line and the top levels of the tree
+     * stay cached. A search ends on the first range starting above the key
+     * and the answer is always the range before it, so treePredecessors
+     * holds that range's last address and value index for every node,
+     * packed into one long so the answer costs a single extra read.
+     * Node 0 is not part of the tree, a search past the last range ends
+     * there, so it describes the last range.
+     */
+    private final int[] tree;
+    private final long[] treePredecessors;
+
+    private IPRangeDatabase(int[] starts, int[] ends, int[] valueIndexes, List<V> values)
+    {
+        this.starts = starts;
+        this.ends = ends;
+        this.valueIndexes = valueIndexes;
+        this.values = values;
+
+        int count = starts.length;
+        tree = new int[count + 1];
+        treePredecessors = new long[count + 1];
+        fillTree(0, 1);
+        treePredecessors[0] = predecessor(count);
+    }
+
+    /**
+     * Creates a builder for a new database.
+     *
+     * @param <V> the type of the values
+     * @return the builder
+     */
+    public static <V> Builder<V> builder()
+    {
+        return new Builder<>();
+    }
+
+    /**
+     * Reads a database from text where every line holds a prefix
+     * in the form ###.###.###.###/## or a range in the form
+     * ###.###.###.###-###.###.###.### followed by whitespace or a comma
+     * and the value. Blank lines and lines starting with # are skipped.
+     *
+     * @param reader the text
+     * @return the database
+     * @throws IOException if the text cannot be read
+     * @throws IPException if a line is malformed or two ranges overlap
+     */
+    public static IPRangeDatabase<String> load(Reader reader) throws IOException, IPException
+    {
+        Builder<String> builder = builder();
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null)
+        {
+            lineNumber++;
+            String trimmed = line.trim();
+            if(trimmed.isEmpty() || trimmed.charAt(0) == '#')
+            {
+                continue;
+            }
+            int separator = 0;
+            while (separator < trimmed.length() && !isSeparator(trimmed.charAt(separator)))
+            {
+                separator++;
+            }
+            int valueStart = separator;
+            while (valueStart < trimmed.length() && isSeparator(trimmed.charAt(valueStart)))
+            {
+                valueStart++;
+            }
+            if(valueStart == trimmed.length())
+            {
+                throw new IPException("IPException on IPRangeDatabase.load line " + lineNumber + " has no value.");
+            }
+            String range = trimmed.substring(0, separator);
+            String value = trimmed.substring(valueStart);
+            int dash = range.indexOf('-');
+            if(dash >= 0)
+            {
+                builder.addRange(IPv4Util.parseAddress(range, 0, dash), IPv4Util.parseAddress(range, dash + 1, range.length()), value);
+            }
+            else
+            {
+                builder.addCidr(range, value);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Finds the value of the range holding an address.
+     *
+     * @param address the address
+     * @return the value or null if no range holds the address
+     */
+    public V lookup(int address)
+    {
+        int valueIndex = lookupValueIndex(address);
+        return valueIndex < 0 ? null : values.get(valueIndex);
+    }
+
+    /**
+     * Finds the value of the range holding an address
+     * in the form ###.###.###.###.
+     *
+     * @param address the address
+     * @return the value or null if no range holds the address
+     * @throws IPException if the address is malformed
+     */
+    public V lookup(String address) throws IPException
+    {
+        return lookup(IPv4Util.parseAddress(address));
+    }
+
+    /**
+     * Finds the value index of the range holding an address.
+     *
+     * @param address the address
+     * @return the value index or -1 if no range holds the address
+     */
+    public int lookupValueIndex(int address)
+    {
+        int key = address ^ Integer.MIN_VALUE;
+        int count = starts.length;
+        int k = 1;
+        while (k <= count)
+        {
+            k = 2 * k + (tree[k] <= key ? 1 : 0);
+        }
+        // Undo the right turns taken after the last left turn to land on the first start above the key.
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        long predecessor = treePredecessors[k];
+        return key > (int) (predecessor >> 32) ? -1 : (int) predecessor;
+    }
+
+    /**
+     * Finds the value indexes for a batch of addresses.
+     * The batch is sorted so the ranges are read front to back once,
+     * which is much kinder to the cache than independent lookups
+     * when the batch is large.
+     *
+     * @param addresses    the addresses
+     * @param valueIndexes where the value indexes, or -1, are written
+     */
+    public void lookupValueIndexes(int[] addresses, int[] valueIndexes)
+    {
+        int count = addresses.length;
+        if(valueIndexes.length < count)
+        {
+            throw new IllegalArgumentException("The result array is shorter than the address array.");
+        }
+        long[] queries = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            queries[i] = ((long) (addresses[i] ^ Integer.MIN_VALUE) << 32) | i;
+        }
+        Arrays.sort(queries);
+
+        int rangeCount = starts.length;
+        int rank = -1;
+        for (long query : queries)
+        {
+            int key = (int) (query >> 32);
+            // Gallop forward to the last range starting at or before the key.
+            int step = 1;
+            while (rank + step < rangeCount && starts[rank + step] <= key)
+            {
+                rank += step;
+                step <<= 1;
+            }
+            while (step > 1)
+            {
+                step >>>= 1;
+                if(rank + step < rangeCount && starts[rank + step] <= key)
+                {
+                    rank += step;
+                }
+            }
+            valueIndexes[(int) query] = rank >= 0 && key <= ends[rank] ? this.valueIndexes[rank] : -1;
+        }
+    }
+
+    /**
+     * Gets a value by its value index.
+     *
+     * @param valueIndex the value index
+     * @return the value
+     */
+    public V getValue(int valueIndex)
+    {
+        return values.get(valueIndex);
+    }
+
+    /**
+     * Gets the amount of distinct values.
+     *
+     * @return the amount of values
+     */
+    public int getValueCount()
+    {
+        return values.size();
+    }
+
+    /**
+     * Gets the amount of ranges.
+     *
+     * @return the amount of ranges
+     */
+    public int getRangeCount()
+    {
+        return starts.length;
+    }
+
+    /**
+     * Gets the first address of a range, ranges are sorted by it.
+     *
+     * @param rank the position of the range
+     * @return the first address
+     */
+    public int getRangeStart(int rank)
+    {
+        return starts[rank] ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * Gets the last address of a range.
+     *
+     * @param rank the position of the range
+     * @return the last address
+     */
+    public int getRangeEnd(int rank)
+    {
+        return ends[rank] ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * Gets the value index of a range.
+     *
+     * @param rank the position of the range
+     * @return the value index
+     */
+    public int getRangeValueIndex(int rank)
+    {
+        return valueIndexes[rank];
+    }
+
+    private int fillTree(int rank, int k)
+    {
+        if(k <= starts.length)
+        {
+            rank = fillTree(rank, 2 * k);
+            tree[k] = starts[rank];
+            treePredecessors[k] = predecessor(rank);
+            rank = fillTree(rank + 1, 2 * k + 1);
+        }
+        return rank;
+    }
+
+    /*
+     * Nothing comes before the first range, so an end below every
+     * key stands in for it and its value index is never returned.
+     */
+    private long predecessor(int rank)
+    {
+        return rank == 0 ? ((long) Integer.MIN_VALUE << 32) | 0xFFFFFFFFL : ((long) ends[rank - 1] << 32) | (valueIndexes[rank - 1] & 0xFFFFFFFFL);
+    }
+
+    private static boolean isSeparator(char ch)
+    {
+        return ch == ' ' || ch == '\t' || ch == ',';
+    }
+
+    /**
+     * Collects ranges into growable primitive arrays
+     * and sorts and checks them when the database is built.
+     *
+     * @param <V> the type of the values
+     */
+    public static final class Builder<V>
+    {
+        private int[] starts = new int[1024];
+        private int[] ends = new int[1024];
+        private int[] valueIndexes = new int[1024];
+        private int count;
+        private final List<V> values = new ArrayList<>();
+        private final Map<V, Integer> valueIndexByValue = new HashMap<>();
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Adds every address of a prefix in the form ###.###.###.###/##.
+         *
+         * @param cidr  the prefix
+         * @param value the value
+         * @return this builder
+         * @throws IPException if the prefix is malformed
+         */
+        public Builder<V> addCidr(String cidr, V value) throws IPException
+        {
+            return addCidr(IPv4Util.parseCidrAddress(cidr), IPv4Util.parseCidrPrefix(cidr), value);
+        }
+
+        /**
+         * Adds every address from the network address
+         * to the broadcast address of a prefix.
+         *
+         * @param address      any address in the prefix
+         * @param prefixLength the prefix length
+         * @param value        the value
+         * @return this builder
+         * @throws IPException if the prefix length is out of range
+         */
+        public Builder<V> addCidr(int address, int prefixLength, V value) throws IPException
+        {
+            return addRange(IPv4Util.networkAddress(address, prefixLength), IPv4Util.broadcastAddress(address, prefixLength), value);
+        }
+
+        /**
+         * Adds every address between two addresses, both included.
+         *
+         * @param start the first address
+         * @param end   the last address
+         * @param value the value
+         * @return this builder
+         * @throws IPException if the end comes before the start
+         */
+        public Builder<V> addRange(int start, int end, V value) throws IPException
+        {
+            if(Integer.compareUnsigned(start, end) > 0)
+            {
+                throw new IPException("IPException on IPRangeDatabase.Builder.addRange " + IPv4Util.formatAddress(start)
+                        + " comes after " + IPv4Util.formatAddress(end) + ".");
+            }
+            if(count == starts.length)
+            {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+                valueIndexes = Arrays.copyOf(valueIndexes, count * 2);
+            }
+            Integer valueIndex = valueIndexByValue.get(value);
+            if(valueIndex == null)
+            {
+                valueIndex = values.size();
+                values.add(value);
+                valueIndexByValue.put(value, valueIndex);
+            }
+            starts[count] = start ^ Integer.MIN_VALUE;
+            ends[count] = end ^ Integer.MIN_VALUE;
+            valueIndexes[count] = valueIndex;
+            count++;
+            return this;
+        }
+
+        /**
+         * Sorts the ranges and builds the database.
+         *
+         * @return the database
+         * @throws IPException if two ranges overlap
+         */
+        public IPRangeDatabase<V> build() throws IPException
+        {
+            long[] order = new long[count];
+            for (int i = 0; i < count; i++)
+            {
+                order[i] = ((long) starts[i] << 32) | i;
+            }
+            Arrays.sort(order);
+
+            int[] sortedStarts = new int[count];
+            int[] sortedEnds = new int[count];
+            int[] sortedValueIndexes = new int[count];
+            for (int rank = 0; rank < count; rank++)
+            {
+                int i = (int) order[rank];
+                sortedStarts[rank] = starts[i];
+                sortedEnds[rank] = ends[i];
+                sortedValueIndexes[rank] = valueIndexes[i];
+                if(rank > 0 && sortedStarts[rank] <= sortedEnds[rank - 1])
+                {
+                    throw new IPException("IPException on IPRangeDatabase.Builder.build the range starting at "
+                            + IPv4Util.formatAddress(sortedStarts[rank] ^ Integer.MIN_VALUE) + " overlaps the range starting at "
+                            + IPv4Util.formatAddress(sortedStarts[rank - 1] ^ Integer.MIN_VALUE) + ".");
+                }
+            }
+            return new IPRangeDatabase<>(sortedStarts, sortedEnds, sortedValueIndexes, new ArrayList<>(values));
+        }
+    }
+}
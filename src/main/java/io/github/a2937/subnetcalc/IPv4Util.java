@@ -0,0 +1,319 @@
+package io.github.a2937.subnetcalc;
+
+/**
+ * Helpers for working with IPv4 addresses as
+ * 32 bit integers instead of strings.
+ * Nothing in here compiles a regular expression or
+ * builds a table lazily, which keeps the first call cheap.
+ * <p>
+ * Addresses above 127.255.255.255 are negative when stored
+ * in an int so they have to be compared as unsigned values.
+ */
+public final class IPv4Util
+{
+    /**
+     * The subnet mask for every prefix length, indexed by the length.
+     */
+    private static final int[] PREFIX_MASKS = {
+            0x00000000, 0x80000000, 0xC0000000, 0xE0000000,
+            0xF0000000, 0xF8000000, 0xFC000000, 0xFE000000,
+            0xFF000000, 0xFF800000, 0xFFC00000, 0xFFE00000,
+            0xFFF00000, 0xFFF80000, 0xFFFC0000, 0xFFFE0000,
+            0xFFFF0000, 0xFFFF8000, 0xFFFFC000, 0xFFFFE000,
+            0xFFFFF000, 0xFFFFF800, 0xFFFFFC00, 0xFFFFFE00,
+            0xFFFFFF00, 0xFFFFFF80, 0xFFFFFFC0, 0xFFFFFFE0,
+            0xFFFFFFF0, 0xFFFFFFF8, 0xFFFFFFFC, 0xFFFFFFFE,
+            0xFFFFFFFF
+    };
+
+    private IPv4Util()
+    {
+    }
+
+    /**
+     * Parses an address in the form ###.###.###.###
+     * into an int. Surrounding spaces are ignored and
+     * every section has to be between 0 and 255.
+     *
+     * @param address the address
+     * @return the address as an int
+     * @throws IPException if the address is malformed
+     */
+    public static int parseAddress(String address) throws IPException
+    {
+        return parseAddress(address, 0, address.length());
+    }
+
+    /**
+     * Parses the address found between two positions
+     * of a string without copying it first.
+     *
+     * @param text  the text holding the address
+     * @param start the index of the first character
+     * @param end   the index after the last character
+     * @return the address as an int
+     * @throws IPException if the address is malformed
+     */
+    public static int parseAddress(CharSequence text, int start, int end) throws IPException
+    {
+        while (start < end && text.charAt(start) == ' ')
+        {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) == ' ')
+        {
+            end--;
+        }
+        int address = 0;
+        int octet = 0;
+        int digits = 0;
+        int octets = 0;
+        for (int i = start; i < end; i++)
+        {
+            char ch = text.charAt(i);
+            if(ch >= '0' && ch <= '9')
+            {
+                octet = octet * 10 + (ch - '0');
+                if(++digits > 3 || octet > 255)
+                {
+                    throw malformed(text, start, end);
+                }
+            }
+            else if(ch == '.' && digits > 0 && octets < 3)
+            {
+                address = (address << 8) | octet;
+                octets++;
+                octet = 0;
+                digits = 0;
+            }
+            else
+            {
+                throw malformed(text, start, end);
+            }
+        }
+        if(digits == 0 || octets != 3)
+        {
+            throw malformed(text, start, end);
+        }
+        return (address << 8) | octet;
+    }
+
+    /**
+     * Parses the address part of a prefix in the form
+     * ###.###.###.###/## and returns the network address,
+     * so host bits set by mistake are cleared.
+     *
+     * @param cidr the prefix
+     * @return the network address of the prefix
+     * @throws IPException if the prefix is malformed
+     */
+    public static int parseCidrAddress(String cidr) throws IPException
+    {
+        int slash = cidrSlash(cidr);
+        return parseAddress(cidr, 0, slash) & maskFromPrefix(parsePrefixOrMask(cidr.substring(slash + 1).trim()));
+    }
+
+    /**
+     * Parses the prefix length of a prefix in the form ###.###.###.###/##.
+     *
+     * @param cidr the prefix
+     * @return the prefix length
+     * @throws IPException if the prefix is malformed
+     */
+    public static int parseCidrPrefix(String cidr) throws IPException
+    {
+        return parsePrefixOrMask(cidr.substring(cidrSlash(cidr) + 1).trim());
+    }
+
+    /**
+     * Formats an int as an address in the form ###.###.###.###
+     * without padding zeros.
+     *
+     * @param address the address
+     * @return the formatted address
+     */
+    public static String formatAddress(int address)
+    {
+        return new StringBuilder(15)
+                .append(address >>> 24).append('.')
+                .append((address >>> 16) & 0xFF).append('.')
+                .append((address >>> 8) & 0xFF).append('.')
+                .append(address & 0xFF)
+                .toString();
+    }
+
+    /**
+     * Gets the subnet mask for a prefix length as an int.
+     *
+     * @param prefixLength the prefix length between 0 and 32
+     * @return the subnet mask
+     * @throws IPException if the length is out of range
+     */
+    public static int maskFromPrefix(int prefixLength) throws IPException
+    {
+        if(prefixLength < 0 || prefixLength > 32)
+        {
+            throw new IPException("IPException on IPv4Util.maskFromPrefix " + prefixLength + " is not a prefix length between 0 and 32.");
+        }
+        return PREFIX_MASKS[prefixLength];
+    }
+
+    /**
+     * Gets the prefix length of a subnet mask.
+     *
+     * @param mask the subnet mask
+     * @return the prefix length
+     * @throws IPException if the ones in the mask are not contiguous
+     */
+    public static int prefixFromMask(int mask) throws IPException
+    {
+        int prefixLength = Integer.bitCount(mask);
+        if(PREFIX_MASKS[prefixLength] != mask)
+        {
+            throw new IPException("IPException on IPv4Util.prefixFromMask " + formatAddress(mask) + " is not a contiguous subnet mask.");
+        }
+        return prefixLength;
+    }
+
+    /**
+     * Parses either a prefix length such as 24
+     * or a subnet mask such as 255.255.255.0
+     * and returns the prefix length.
+     *
+     * @param prefixOrMask the prefix length or subnet mask
+     * @return the prefix length
+     * @throws IPException if it is neither
+     */
+    public static int parsePrefixOrMask(String prefixOrMask) throws IPException
+    {
+        if(prefixOrMask.indexOf('.') >= 0)
+        {
+            return prefixFromMask(parseAddress(prefixOrMask));
+        }
+        int prefixLength = 0;
+        int length = prefixOrMask.length();
+        if(length == 0 || length > 2)
+        {
+            throw new IPException("IPException on IPv4Util.parsePrefixOrMask " + prefixOrMask + " is not a prefix length or subnet mask.");
+        }
+        for (int i = 0; i < length; i++)
+        {
+            char ch = prefixOrMask.charAt(i);
+            if(ch < '0' || ch > '9')
+            {
+                throw new IPException("IPException on IPv4Util.parsePrefixOrMask " + prefixOrMask + " is not a prefix length or subnet mask.");
+            }
+            prefixLength = prefixLength * 10 + (ch - '0');
+        }
+        maskFromPrefix(prefixLength);
+        return prefixLength;
+    }
+
+    /**
+     * Calculates the network address of an address.
+     *
+     * @param address      the address
+     * @param prefixLength the prefix length
+     * @return the network address
+     */
+    public static int networkAddress(int address, int prefixLength)
+    {
+        return address & maskFromPrefix(prefixLength);
+    }
+
+    /**
+     * Calculates the broadcast address of an address.
+     *
+     * @param address      the address
+     * @param prefixLength the prefix length
+     * @return the broadcast address
+     */
+    public static int broadcastAddress(int address, int prefixLength)
+    {
+        return address | ~maskFromPrefix(prefixLength);
+    }
+
+    /**
+     * Gets the length of the prefix two addresses share.
+     *
+     * @param addressOne the first address
+     * @param addressTwo the second address
+     * @return the amount of leading bits that are the same
+     */
+    public static int commonPrefixLength(int addressOne, int addressTwo)
+    {
+        return Integer.numberOfLeadingZeros(addressOne ^ addressTwo);
+    }
+
+    /**
+     * Calculates the network address of an address given
+     * a prefix length or subnet mask, all as text.
+     *
+     * @param address      the address in the form ###.###.###.###
+     * @param prefixOrMask the prefix length or subnet mask
+     * @return the network address in the form ###.###.###.###
+     * @throws IPException if the address or prefix is malformed
+     */
+    public static String calculateNetworkAddress(String address, String prefixOrMask) throws IPException
+    {
+        return formatAddress(networkAddress(parseAddress(address), parsePrefixOrMask(prefixOrMask)));
+    }
+
+    /**
+     * Calculates the broadcast address of an address given
+     * a prefix length or subnet mask, all as text.
+     *
+     * @param address      the address in the form ###.###.###.###
+     * @param prefixOrMask the prefix length or subnet mask
+     * @return the broadcast address in the form ###.###.###.###
+     * @throws IPException if the address or prefix is malformed
+     */
+    public static String calculateBroadcastAddress(String address, String prefixOrMask) throws IPException
+    {
+        return formatAddress(broadcastAddress(parseAddress(address), parsePrefixOrMask(prefixOrMask)));
+    }
+
+    /**
+     * Checks whether a prefix in the form ###.###.###.###/##
+     * holds an address.
+     *
+     * @param cidr    the prefix
+     * @param address the address in the form ###.###.###.###
+     * @return true if the address is inside the prefix
+     * @throws IPException if the prefix or address is malformed
+     */
+    public static boolean contains(String cidr, String address) throws IPException
+    {
+        return networkAddress(parseAddress(address), parseCidrPrefix(cidr)) == parseCidrAddress(cidr);
+    }
+
+    /**
+     * Finds the smallest prefix holding two addresses.
+     *
+     * @param addressOne the first address in the form ###.###.###.###
+     * @param addressTwo the second address in the form ###.###.###.###
+     * @return the prefix in the form ###.###.###.###/##
+     * @throws IPException if an address is malformed
+     */
+    public static String summarize(String addressOne, String addressTwo) throws IPException
+    {
+        int first = parseAddress(addressOne);
+        int length = commonPrefixLength(first, parseAddress(addressTwo));
+        return formatAddress(networkAddress(first, length)) + "/" + length;
+    }
+
+    private static int cidrSlash(String cidr)
+    {
+        int slash = cidr.indexOf('/');
+        if(slash < 0)
+        {
+            throw new IPException("IPException on IPv4Util.parseCidr " + cidr + " is not in the form ###.###.###.###/##.");
+        }
+        return slash;
+    }
+
+    private static IPException malformed(CharSequence text, int start, int end)
+    {
+        return new IPException("IPException on IPv4Util.parseAddress " + text.subSequence(start, end) + " is not in the form ###.###.###.###.");
+    }
+}
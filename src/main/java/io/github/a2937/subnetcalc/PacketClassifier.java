@@ -0,0 +1,330 @@
+package io.github.a2937.subnetcalc;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the highest priority rule matching a packet
+ * using tuple space search.
+ * <p>
+ * Rules are grouped by their pair of source and destination
+ * prefix lengths. Every group keeps a hash table keyed by the
+ * masked source and destination addresses, so a packet needs one
+ * lookup per group instead of one check per rule. Inside a bucket the
+ * rules are chained from the highest priority down and only the ports
+ * and protocol are left to check. Groups are searched starting with
+ * the one holding the best rule and the search stops as soon as no
+ * remaining group can beat the match already found.
+ * <p>
+ * When two matching rules have the same priority the one that
+ * came first in the list wins. The classifier cannot be changed
+ * after it is built and is safe to share between threads.
+ */
+public final class PacketClassifier
+{
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private final PacketRule[] rules;
+
+    /*
+     * Rules are identified by rank, their position when sorted from
+     * best to worst, so a lower rank always wins. The fields checked
+     * while walking a bucket are packed RULE_STRIDE ints per rank so
+     * every step reads a single cache line. Port ranges are kept as
+     * the low port and the width of the range so each one can be
+     * checked with a single unsigned comparison.
+     */
+    private static final int RULE_STRIDE = 8;
+    private static final int SOURCE_PORT_LOW = 0;
+    private static final int SOURCE_PORT_SPAN = 1;
+    private static final int DESTINATION_PORT_LOW = 2;
+    private static final int DESTINATION_PORT_SPAN = 3;
+    private static final int PROTOCOL = 4;
+    private static final int NEXT_IN_BUCKET = 5;
+
+    private final int[] rankToRule;
+    private final int[] ruleData;
+
+    private final Tuple[] tuples;
+
+    /**
+     * Builds a classifier for a list of rules.
+     *
+     * @param rules the rules
+     */
+    public PacketClassifier(List<PacketRule> rules)
+    {
+        this.rules = rules.toArray(new PacketRule[0]);
+        int count = this.rules.length;
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> -this.rules[i].getPriority()).thenComparingInt(i -> i));
+
+        rankToRule = new int[count];
+        ruleData = new int[count * RULE_STRIDE];
+
+        Map<Integer, Map<Long, int[]>> buckets = new LinkedHashMap<>();
+        for (int rank = 0; rank < count; rank++)
+        {
+            PacketRule rule = this.rules[order[rank]];
+            rankToRule[rank] = order[rank];
+            int data = rank * RULE_STRIDE;
+            ruleData[data + SOURCE_PORT_LOW] = rule.getSourcePortLow();
+            ruleData[data + SOURCE_PORT_SPAN] = rule.getSourcePortHigh() - rule.getSourcePortLow();
+            ruleData[data + DESTINATION_PORT_LOW] = rule.getDestinationPortLow();
+            ruleData[data + DESTINATION_PORT_SPAN] = rule.getDestinationPortHigh() - rule.getDestinationPortLow();
+            ruleData[data + PROTOCOL] = rule.getProtocol();
+            ruleData[data + NEXT_IN_BUCKET] = -1;
+
+            int lengths = (rule.getSourcePrefixLength() << 8) | rule.getDestinationPrefixLength();
+            Map<Long, int[]> tuple = buckets.computeIfAbsent(lengths, key -> new HashMap<>());
+            int[] chain = tuple.get(key(rule.getSourceAddress(), rule.getDestinationAddress()));
+            if(chain == null)
+            {
+                tuple.put(key(rule.getSourceAddress(), rule.getDestinationAddress()), new int[] { rank, rank });
+            }
+            else
+            {
+                ruleData[chain[1] * RULE_STRIDE + NEXT_IN_BUCKET] = rank;
+                chain[1] = rank;
+            }
+        }
+
+        // Insertion order of buckets follows rank, so the tuples already come out best first.
+        tuples = new Tuple[buckets.size()];
+        int t = 0;
+        for (Map.Entry<Integer, Map<Long, int[]>> entry : buckets.entrySet())
+        {
+            tuples[t++] = new Tuple(entry.getKey() >>> 8, entry.getKey() & 0xFF, entry.getValue());
+        }
+    }
+
+    /**
+     * Finds the best rule matching a packet.
+     *
+     * @param source          the source address
+     * @param destination     the destination address
+     * @param sourcePort      the source port
+     * @param destinationPort the destination port
+     * @param protocol        the protocol number
+     * @return the matching rule or null if none match
+     */
+    public PacketRule classify(int source, int destination, int sourcePort, int destinationPort, int protocol)
+    {
+        int index = classifyIndex(source, destination, sourcePort, destinationPort, protocol);
+        return index < 0 ? null : rules[index];
+    }
+
+    /**
+     * Finds the position of the best rule matching a packet
+     * in the list the classifier was built from.
+     *
+     * @param source          the source address
+     * @param destination     the destination address
+     * @param sourcePort      the source port
+     * @param destinationPort the destination port
+     * @param protocol        the protocol number
+     * @return the index of the matching rule or -1 if none match
+     */
+    public int classifyIndex(int source, int destination, int sourcePort, int destinationPort, int protocol)
+    {
+        int best = NO_MATCH;
+        for (Tuple tuple : tuples)
+        {
+            if(tuple.bestRank >= best)
+            {
+                break;
+            }
+            int rank = tuple.find(source & tuple.sourceMask, destination & tuple.destinationMask);
+            while (rank >= 0 && rank < best)
+            {
+                int data = rank * RULE_STRIDE;
+                int ruleProtocol = ruleData[data + PROTOCOL];
+                // Non short circuiting so the whole check is one branch that is usually not taken.
+                if(within(sourcePort, ruleData[data + SOURCE_PORT_LOW], ruleData[data + SOURCE_PORT_SPAN])
+                        & within(destinationPort, ruleData[data + DESTINATION_PORT_LOW], ruleData[data + DESTINATION_PORT_SPAN])
+                        & (ruleProtocol == PacketRule.ANY_PROTOCOL | ruleProtocol == protocol))
+                {
+                    best = rank;
+                    break;
+                }
+                rank = ruleData[data + NEXT_IN_BUCKET];
+            }
+        }
+        return best == NO_MATCH ? -1 : rankToRule[best];
+    }
+
+    /**
+     * Classifies many packets at once. The packet fields are
+     * passed as parallel arrays and the index of the matching rule,
+     * or -1, is written to the same position of the results.
+     *
+     * @param sources          the source addresses
+     * @param destinations     the destination addresses
+     * @param sourcePorts      the source ports
+     * @param destinationPorts the destination ports
+     * @param protocols        the protocol numbers
+     * @param results          where the rule indexes are written
+     */
+    public void classify(int[] sources, int[] destinations, int[] sourcePorts, int[] destinationPorts, int[] protocols, int[] results)
+    {
+        int count = sources.length;
+        if(destinations.length != count || sourcePorts.length != count || destinationPorts.length != count
+                || protocols.length != count || results.length < count)
+        {
+            throw new IllegalArgumentException("The packet arrays must all have the same length.");
+        }
+        for (int i = 0; i < count; i++)
+        {
+            results[i] = classifyIndex(sources[i], destinations[i], sourcePorts[i], destinationPorts[i], protocols[i]);
+        }
+    }
+
+    /**
+     * Gets the rule at a position of the list the classifier was built from.
+     *
+     * @param index the index
+     * @return the rule
+     */
+    public PacketRule getRule(int index)
+    {
+        return rules[index];
+    }
+
+    /**
+     * Gets the amount of rules.
+     *
+     * @return the amount of rules
+     */
+    public int size()
+    {
+        return rules.length;
+    }
+
+    /**
+     * Gets the amount of distinct prefix length pairs,
+     * which is the most hash lookups a packet can take.
+     *
+     * @return the amount of tuples
+     */
+    public int getTupleCount()
+    {
+        return tuples.length;
+    }
+
+    private static boolean within(int value, int low, int span)
+    {
+        return value - low + Integer.MIN_VALUE <= span + Integer.MIN_VALUE;
+    }
+
+    private static long key(int source, int destination)
+    {
+        return ((long) source << 32) | (destination & 0xFFFFFFFFL);
+    }
+
+    /*
+     * An open addressed hash table from a masked address pair
+     * to the best ranked rule of its bucket.
+     */
+    private static final class Tuple
+    {
+        private final int sourceMask;
+        private final int destinationMask;
+        private final int bestRank;
+        /*
+         * Keys and chain heads are interleaved so a probe
+         * usually touches a single cache line. An empty
+         * slot has a negative head.
+         */
+        private final long[] slots;
+        private final int shift;
+        private final int slotMask;
+        /*
+         * Most packets miss most tuples, so a one bit per key filter
+         * about sixteen times larger than the key count is checked first.
+         * It is small enough to stay in cache when the table is not.
+         */
+        private final long[] filter;
+        private final int filterShift;
+
+        private Tuple(int sourcePrefixLength, int destinationPrefixLength, Map<Long, int[]> chains)
+        {
+            sourceMask = IPv4Util.maskFromPrefix(sourcePrefixLength);
+            destinationMask = IPv4Util.maskFromPrefix(destinationPrefixLength);
+
+            int bits = 1;
+            while ((1 << bits) < chains.size() * 2)
+            {
+                bits++;
+            }
+            slots = new long[2 << bits];
+            Arrays.fill(slots, -1L);
+            shift = 64 - bits;
+            slotMask = (1 << bits) - 1;
+
+            int filterBits = 6;
+            while ((1 << filterBits) < chains.size() * 16)
+            {
+                filterBits++;
+            }
+            filter = new long[1 << (filterBits - 6)];
+            filterShift = 64 - filterBits;
+
+            int best = NO_MATCH;
+            for (Map.Entry<Long, int[]> chain : chains.entrySet())
+            {
+                long key = chain.getKey();
+                int slot = slot(key);
+                while (slots[2 * slot + 1] >= 0)
+                {
+                    slot = (slot + 1) & slotMask;
+                }
+                slots[2 * slot] = key;
+                slots[2 * slot + 1] = chain.getValue()[0];
+                int bit = filterBit(key);
+                filter[bit >>> 6] |= 1L << bit;
+                best = Math.min(best, chain.getValue()[0]);
+            }
+            bestRank = best;
+        }
+
+        private int find(int source, int destination)
+        {
+            long key = key(source, destination);
+            int bit = filterBit(key);
+            if((filter[bit >>> 6] & (1L << bit)) == 0)
+            {
+                return -1;
+            }
+            int slot = slot(key);
+            long head;
+            while ((head = slots[2 * slot + 1]) >= 0)
+            {
+                if(slots[2 * slot] == key)
+                {
+                    return (int) head;
+                }
+                slot = (slot + 1) & slotMask;
+            }
+            return -1;
+        }
+
+        private int slot(long key)
+        {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+        }
+
+        private int filterBit(long key)
+        {
+            return (int) ((key * 0xC2B2AE3D27D4EB4FL) >>> filterShift);
+        }
+    }
+}
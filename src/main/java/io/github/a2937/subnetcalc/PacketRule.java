@@ -0,0 +1,181 @@
+package io.github.a2937.subnetcalc;
+
+/**
+ * A firewall style rule matching the source prefix,
+ * destination prefix, source and destination port ranges
+ * and protocol of a packet. Rules are immutable.
+ */
+public final class PacketRule
+{
+    /**
+     * The protocol value that matches every protocol.
+     */
+    public static final int ANY_PROTOCOL = -1;
+
+    private final int priority;
+    private final int sourceAddress;
+    private final int sourcePrefixLength;
+    private final int destinationAddress;
+    private final int destinationPrefixLength;
+    private final int sourcePortLow;
+    private final int sourcePortHigh;
+    private final int destinationPortLow;
+    private final int destinationPortHigh;
+    private final int protocol;
+
+    /**
+     * Instantiates a new rule from two prefixes
+     * in the form ###.###.###.###/##.
+     *
+     * @param priority            the priority, the higher value wins
+     * @param sourceCidr          the source prefix
+     * @param destinationCidr     the destination prefix
+     * @param sourcePortLow       the lowest matching source port
+     * @param sourcePortHigh      the highest matching source port
+     * @param destinationPortLow  the lowest matching destination port
+     * @param destinationPortHigh the highest matching destination port
+     * @param protocol            the protocol number or ANY_PROTOCOL
+     * @throws IPException              if a prefix is malformed
+     * @throws IllegalArgumentException if a port range is not within 0-65535
+     *                                  or the protocol is not within 0-255 or ANY_PROTOCOL
+     */
+    public PacketRule(int priority, String sourceCidr, String destinationCidr,
+                      int sourcePortLow, int sourcePortHigh,
+                      int destinationPortLow, int destinationPortHigh, int protocol) throws IPException
+    {
+        this(priority, IPv4Util.parseCidrAddress(sourceCidr), IPv4Util.parseCidrPrefix(sourceCidr),
+                IPv4Util.parseCidrAddress(destinationCidr), IPv4Util.parseCidrPrefix(destinationCidr),
+                sourcePortLow, sourcePortHigh, destinationPortLow, destinationPortHigh, protocol);
+    }
+
+    /**
+     * Instantiates a new rule from prefixes stored as ints.
+     * Host bits of the addresses are cleared.
+     *
+     * @param priority                the priority, the higher value wins
+     * @param sourceAddress           the source address
+     * @param sourcePrefixLength      the source prefix length
+     * @param destinationAddress      the destination address
+     * @param destinationPrefixLength the destination prefix length
+     * @param sourcePortLow           the lowest matching source port
+     * @param sourcePortHigh          the highest matching source port
+     * @param destinationPortLow      the lowest matching destination port
+     * @param destinationPortHigh     the highest matching destination port
+     * @param protocol                the protocol number or ANY_PROTOCOL
+     * @throws IPException              if a prefix length is out of range
+     * @throws IllegalArgumentException if a port range is not within 0-65535
+     *                                  or the protocol is not within 0-255 or ANY_PROTOCOL
+     */
+    public PacketRule(int priority, int sourceAddress, int sourcePrefixLength,
+                      int destinationAddress, int destinationPrefixLength,
+                      int sourcePortLow, int sourcePortHigh,
+                      int destinationPortLow, int destinationPortHigh, int protocol) throws IPException
+    {
+        checkPortRange(sourcePortLow, sourcePortHigh);
+        checkPortRange(destinationPortLow, destinationPortHigh);
+        if(protocol != ANY_PROTOCOL && (protocol < 0 || protocol > 255))
+        {
+            throw new IllegalArgumentException("Protocol " + protocol + " is not within 0-255.");
+        }
+        this.priority = priority;
+        this.sourceAddress = IPv4Util.networkAddress(sourceAddress, sourcePrefixLength);
+        this.sourcePrefixLength = sourcePrefixLength;
+        this.destinationAddress = IPv4Util.networkAddress(destinationAddress, destinationPrefixLength);
+        this.destinationPrefixLength = destinationPrefixLength;
+        this.sourcePortLow = sourcePortLow;
+        this.sourcePortHigh = sourcePortHigh;
+        this.destinationPortLow = destinationPortLow;
+        this.destinationPortHigh = destinationPortHigh;
+        this.protocol = protocol;
+    }
+
+    /**
+     * Checks a packet against this rule one field at a time.
+     * The classifier gives the same answer much faster
+     * when there are many rules.
+     *
+     * @param source          the source address
+     * @param destination     the destination address
+     * @param sourcePort      the source port
+     * @param destinationPort the destination port
+     * @param protocol        the protocol number
+     * @return whether the rule matches the packet
+     */
+    public boolean matches(int source, int destination, int sourcePort, int destinationPort, int protocol)
+    {
+        return IPv4Util.networkAddress(source, sourcePrefixLength) == sourceAddress
+                && IPv4Util.networkAddress(destination, destinationPrefixLength) == destinationAddress
+                && sourcePort >= sourcePortLow && sourcePort <= sourcePortHigh
+                && destinationPort >= destinationPortLow && destinationPort <= destinationPortHigh
+                && (this.protocol == ANY_PROTOCOL || this.protocol == protocol);
+    }
+
+    public int getPriority()
+    {
+        return priority;
+    }
+
+    public int getSourceAddress()
+    {
+        return sourceAddress;
+    }
+
+    public int getSourcePrefixLength()
+    {
+        return sourcePrefixLength;
+    }
+
+    public int getDestinationAddress()
+    {
+        return destinationAddress;
+    }
+
+    public int getDestinationPrefixLength()
+    {
+        return destinationPrefixLength;
+    }
+
+    public int getSourcePortLow()
+    {
+        return sourcePortLow;
+    }
+
+    public int getSourcePortHigh()
+    {
+        return sourcePortHigh;
+    }
+
+    public int getDestinationPortLow()
+    {
+        return destinationPortLow;
+    }
+
+    public int getDestinationPortHigh()
+    {
+        return destinationPortHigh;
+    }
+
+    public int getProtocol()
+    {
+        return protocol;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PacketRule{priority=" + priority
+                + ", source=" + IPv4Util.formatAddress(sourceAddress) + "/" + sourcePrefixLength
+                + ", destination=" + IPv4Util.formatAddress(destinationAddress) + "/" + destinationPrefixLength
+                + ", sourcePorts=" + sourcePortLow + "-" + sourcePortHigh
+                + ", destinationPorts=" + destinationPortLow + "-" + destinationPortHigh
+                + ", protocol=" + (protocol == ANY_PROTOCOL ? "any" : Integer.toString(protocol)) + "}";
+    }
+
+    private static void checkPortRange(int low, int high)
+    {
+        if(low < 0 || high > 65535 || low > high)
+        {
+            throw new IllegalArgumentException("Port range " + low + "-" + high + " is not within 0-65535.");
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package io.github.a2937.subnetcalc;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A small embedded server that answers subnet
+ * calculations over a line protocol on a localhost socket.
+ * It lets other tools reuse one warm JVM instead of
+ * starting a new one for every calculation.
+ * <p>
+ * Every request is a single line and every answer is a single
+ * line starting with either {@code OK} or {@code ERR}.
+ * <pre>
+ * NETWORK 192.168.0.2 24             -&gt; OK 192.168.0.0
+ * NETWORK 192.168.0.2 255.255.255.0  -&gt; OK 192.168.0.0
+ * BROADCAST 192.168.0.2 24           -&gt; OK 192.168.0.255
+ * CONTAINS 192.168.0.0/24 192.168.0.9 -&gt; OK true
+ * SUMMARIZE 128.42.5.17 128.42.5.67  -&gt; OK 128.42.5.0/25
+ * QUIT
+ * </pre>
+ * Each connection is handled on its own virtual thread when the
+ * running JVM supports them and on a pooled platform thread otherwise.
+ * Requests from all connections go into a bounded queue which one
+ * worker per processor drains in batches, computing identical requests
+ * in the same batch only once. When the queue is full a connection
+ * waits before reading more of its requests.
+ */
+public class SubnetCalcServer implements Closeable
+{
+    /**
+     * The largest amount of requests computed in one batch.
+     */
+    public static final int MAX_BATCH_SIZE = 256;
+
+    /**
+     * The largest amount of requests waiting to be computed.
+     */
+    public static final int MAX_QUEUED_REQUESTS = 4096;
+
+    private static final CompletableFuture<String> QUIT = new CompletableFuture<>();
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionExecutor;
+    private final BlockingQueue<PendingRequest> requests = new ArrayBlockingQueue<>(MAX_QUEUED_REQUESTS);
+    private final Thread acceptThread;
+    private final Thread[] batchThreads;
+    private volatile boolean running = true;
+
+    /**
+     * Starts a new server bound to the loopback address.
+     *
+     * @param port the port to listen on, or 0 to pick a free one
+     * @throws IOException if the socket cannot be bound
+     */
+    public SubnetCalcServer(int port) throws IOException
+    {
+        serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        connectionExecutor = createConnectionExecutor();
+
+        batchThreads = new Thread[Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < batchThreads.length; i++)
+        {
+            batchThreads[i] = new Thread(this::processBatches, "subnet-calc-batcher-" + i);
+            batchThreads[i].setDaemon(true);
+            batchThreads[i].start();
+        }
+
+        acceptThread = new Thread(this::acceptConnections, "subnet-calc-acceptor");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     *
+     * @return the local port
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections and shuts down the worker threads.
+     *
+     * @throws IOException if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        running = false;
+        serverSocket.close();
+        connectionExecutor.shutdownNow();
+        for (Thread batchThread : batchThreads)
+        {
+            batchThread.interrupt();
+        }
+    }
+
+    /**
+     * Computes the answer for a single request line.
+     * This is what the batch workers run for every request
+     * and it never throws, errors are turned into {@code ERR} lines.
+     * Addresses must have four sections between 0 and 255.
+     *
+     * @param line the request line
+     * @return the response line
+     */
+    public static String handleRequest(String line)
+    {
+        String[] parts = line.trim().split("\\s+");
+        try
+        {
+            switch (parts[0].toUpperCase())
+            {
+                case "NETWORK":
+                    requireArguments(parts, 3);
+                    return "OK " + IPv4Util.calculateNetworkAddress(parts[1], parts[2]);
+                case "BROADCAST":
+                    requireArguments(parts, 3);
+                    return "OK " + IPv4Util.calculateBroadcastAddress(parts[1], parts[2]);
+                case "CONTAINS":
+                    requireArguments(parts, 3);
+                    return "OK " + IPv4Util.contains(parts[1], parts[2]);
+                case "SUMMARIZE":
+                    requireArguments(parts, 3);
+                    return "OK " + IPv4Util.summarize(parts[1], parts[2]);
+                default:
+                    return "ERR unknown command " + parts[0];
+            }
+        }
+        catch (IPException e)
+        {
+            return "ERR " + e.getMessage();
+        }
+        catch (RuntimeException e)
+        {
+            // Anything else is a bug, so its message would only leak internals.
+            return "ERR internal error";
+        }
+    }
+
+    /**
+     * Starts a server from the command line.
+     * The only optional argument is the port.
+     *
+     * @param args the command line arguments
+     * @throws IOException if the socket cannot be bound
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        SubnetCalcServer server = new SubnetCalcServer(port);
+        System.out.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+        try
+        {
+            server.acceptThread.join();
+        }
+        catch (InterruptedException e)
+        {
+            server.close();
+        }
+    }
+
+    private void acceptConnections()
+    {
+        while (running)
+        {
+            try
+            {
+                Socket socket = serverSocket.accept();
+                connectionExecutor.execute(() -> serve(socket));
+            }
+            catch (IOException e)
+            {
+                if(!running)
+                {
+                    return;
+                }
+            }
+        }
+    }
+
+    /*
+     * Reads the lines that are already buffered, up to a batch and never
+     * past a QUIT, before waiting on the answers so pipelined requests
+     * from one client land in the same batch, then writes all answers
+     * in order and flushes once.
+     */
+    private void serve(Socket socket)
+    {
+        try (Socket client = socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.US_ASCII)))
+        {
+            client.setTcpNoDelay(true);
+            List<CompletableFuture<String>> answers = new ArrayList<>(MAX_BATCH_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                answers.add(submit(line));
+                // A burst is capped so a client that never pauses still gets answers
+                // and one connection never holds more than a batch of pending requests.
+                while (answers.size() < MAX_BATCH_SIZE && answers.get(answers.size() - 1) != QUIT
+                        && reader.ready() && (line = reader.readLine()) != null)
+                {
+                    answers.add(submit(line));
+                }
+                for (CompletableFuture<String> answer : answers)
+                {
+                    if(answer == QUIT)
+                    {
+                        writer.flush();
+                        return;
+                    }
+                    writer.write(answer.get());
+                    writer.write('\n');
+                }
+                writer.flush();
+                answers.clear();
+            }
+        }
+        catch (SocketException e)
+        {
+            // The client went away, nothing left to answer.
+        }
+        catch (IOException | ExecutionException e)
+        {
+            // Nothing can be answered on a broken connection, so it is simply closed.
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<String> submit(String line) throws InterruptedException
+    {
+        if(line.trim().equalsIgnoreCase("QUIT"))
+        {
+            return QUIT;
+        }
+        PendingRequest request = new PendingRequest(line.trim());
+        requests.put(request);
+        return request.answer;
+    }
+
+    private void processBatches()
+    {
+        List<PendingRequest> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        Map<String, String> answers = new HashMap<>();
+        while (running)
+        {
+            try
+            {
+                batch.add(requests.take());
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+            requests.drainTo(batch, MAX_BATCH_SIZE - 1);
+            for (PendingRequest request : batch)
+            {
+                String answer = answers.get(request.line);
+                if(answer == null)
+                {
+                    answer = handleRequest(request.line);
+                    answers.put(request.line, answer);
+                }
+                request.answer.complete(answer);
+            }
+            batch.clear();
+            answers.clear();
+        }
+    }
+
+    private static void requireArguments(String[] parts, int count)
+    {
+        if(parts.length != count)
+        {
+            throw new IPException(parts[0] + " expects " + (count - 1) + " arguments.");
+        }
+    }
+
+    /*
+     * Virtual threads only exist from Java 21 onwards while this
+     * project still targets Java 8, so the factory is looked up at runtime.
+     */
+    private static ExecutorService createConnectionExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool(runnable ->
+            {
+                Thread thread = new Thread(runnable, "subnet-calc-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static final class PendingRequest
+    {
+        private final String line;
+        private final CompletableFuture<String> answer = new CompletableFuture<>();
+
+        private PendingRequest(String line)
+        {
+            this.line = line;
+        }
+    }
+}
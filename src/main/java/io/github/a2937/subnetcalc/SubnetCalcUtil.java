@@ -1,6 +1,7 @@
 package io.github.a2937.subnetcalc;
 
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,6 +13,63 @@ import java.util.List;
 public class SubnetCalcUtil
 {
 
+    /*
+     * The answers of getSubnetMaskFromPrefix and getMaximumHostsInSubnet
+     * for every prefix length, written out so the first call
+     * does not have to build any strings.
+     */
+    private static final String[] SUBNET_MASKS = {
+            "",  // /0
+            "128.000.000.000",  // /1
+            "192.000.000.000",  // /2
+            "224.000.000.000",  // /3
+            "240.000.000.000",  // /4
+            "248.000.000.000",  // /5
+            "252.000.000.000",  // /6
+            "254.000.000.000",  // /7
+            "255.000.000.000",  // /8
+            "255.128.000.000",  // /9
+            "255.192.000.000",  // /10
+            "255.224.000.000",  // /11
+            "255.240.000.000",  // /12
+            "255.248.000.000",  // /13
+            "255.252.000.000",  // /14
+            "255.254.000.000",  // /15
+            "255.255.000.000",  // /16
+            "255.255.128.000",  // /17
+            "255.255.192.000",  // /18
+            "255.255.224.000",  // /19
+            "255.255.240.000",  // /20
+            "255.255.248.000",  // /21
+            "255.255.252.000",  // /22
+            "255.255.254.000",  // /23
+            "255.255.255.000",  // /24
+            "255.255.255.128",  // /25
+            "255.255.255.192",  // /26
+            "255.255.255.224",  // /27
+            "255.255.255.240",  // /28
+            "255.255.255.248",  // /29
+            "255.255.255.252",  // /30
+            "255.255.255.254",  // /31
+            "255.255.255.255"   // /32
+    };
+
+    private static final long MAXIMUM_IPV4_USABLE_HOSTS = (1L << 32) - 2;
+
+    /*
+     * The prefix lengths for zero, one and two hosts, the only
+     * counts that do not need room for a network and broadcast address.
+     */
+    private static final int[] SMALL_SUBNET_PREFIXES = { 32, 32, 31 };
+
+    private static final int[] MAXIMUM_HOSTS = {
+            2147483647, 2147483646, 1073741822, 536870910, 268435454, 134217726, 67108862, 33554430,
+            16777214, 8388606, 4194302, 2097150, 1048574, 524286, 262142, 131070,
+            65534, 32766, 16382, 8190, 4094, 2046, 1022, 510,
+            254, 126, 62, 30, 14, 6, 2, 0,
+            -1
+    };
+
     /*
     TODO Finish method
     public static List<String> getUsableAddressesInNetwork(String networkAddress,String subNetMask)
@@ -136,14 +194,107 @@ public class SubnetCalcUtil
 
     /**
      * Gets required sub net mask length for an amount of hosts.
+     * The network and broadcast addresses are not added on top,
+     * use getRequiredPrefixLengthForHosts for that.
      *
      * @param hostsCount the hosts count
      * @return the required sub net mask length for hosts
+     * @throws IPException if the count is negative
+     */
+    public static int getRequiredSubNetMaskLengthForHosts(int hostsCount) throws IPException
+    {
+        if(hostsCount < 0)
+        {
+            throw new IPException("IPException on SubnetCalcUtil.getRequiredSubNetMaskLengthForHosts " + hostsCount + " is not a valid amount of hosts.");
+        }
+        return hostsCount <= 1 ? 32 : Integer.numberOfLeadingZeros(hostsCount - 1);
+    }
+
+    /**
+     * Gets the shortest subnet that still has room for an amount of
+     * hosts once the network and broadcast addresses are taken out.
+     * Following RFC 3021 a /31 holds two hosts and a /32 holds one.
+     *
+     * @param hostsCount the hosts count
+     * @return the prefix length
+     * @throws IPException if the count is negative or larger than 4294967294
+     */
+    public static int getRequiredPrefixLengthForHosts(long hostsCount) throws IPException
+    {
+        if(hostsCount < 0 || hostsCount > MAXIMUM_IPV4_USABLE_HOSTS)
+        {
+            throw new IPException("IPException on SubnetCalcUtil.getRequiredPrefixLengthForHosts " + hostsCount + " hosts do not fit in an IPv4 subnet.");
+        }
+        // Two hosts fit in a /31 and fewer in a /32, anything else needs hostsCount + 2 addresses.
+        return hostsCount <= 2 ? SMALL_SUBNET_PREFIXES[(int) hostsCount] : Long.numberOfLeadingZeros(hostsCount + 1) - 32;
+    }
+
+    /**
+     * Sizes many subnets at once with getRequiredPrefixLengthForHosts.
+     *
+     * @param hostsCounts the hosts counts
+     * @return the prefix length for each count
+     * @throws IPException if a count does not fit in an IPv4 subnet
+     */
+    public static int[] getRequiredPrefixLengthsForHosts(long[] hostsCounts) throws IPException
+    {
+        int[] prefixLengths = new int[hostsCounts.length];
+        for (int i = 0; i < hostsCounts.length; i++)
+        {
+            prefixLengths[i] = getRequiredPrefixLengthForHosts(hostsCounts[i]);
+        }
+        return prefixLengths;
+    }
+
+    /**
+     * Gets the shortest IPv6 subnet with room for an amount of hosts.
+     * IPv6 has no broadcast address so every address can be used.
+     *
+     * @param hostsCount the hosts count
+     * @return the prefix length
+     * @throws IPException if the count is negative
+     */
+    public static int getRequiredIPv6PrefixLengthForHosts(long hostsCount) throws IPException
+    {
+        if(hostsCount < 0)
+        {
+            throw new IPException("IPException on SubnetCalcUtil.getRequiredIPv6PrefixLengthForHosts " + hostsCount + " is not a valid amount of hosts.");
+        }
+        return hostsCount <= 1 ? 128 : 64 + Long.numberOfLeadingZeros(hostsCount - 1);
+    }
+
+    /**
+     * Gets the shortest IPv6 subnet with room for an amount of hosts
+     * too large to fit in a long.
+     *
+     * @param hostsCount the hosts count
+     * @return the prefix length
+     * @throws IPException if the count is negative or larger than 2 to the power of 128
      */
-    public static int getRequiredSubNetMaskLengthForHosts(int hostsCount)
+    public static int getRequiredIPv6PrefixLengthForHosts(BigInteger hostsCount) throws IPException
     {
+        if(hostsCount.signum() < 0 || hostsCount.compareTo(BigInteger.ONE.shiftLeft(128)) > 0)
+        {
+            throw new IPException("IPException on SubnetCalcUtil.getRequiredIPv6PrefixLengthForHosts " + hostsCount + " hosts do not fit in an IPv6 subnet.");
+        }
+        return hostsCount.signum() == 0 ? 128 : 128 - hostsCount.subtract(BigInteger.ONE).bitLength();
+    }
 
-        return 32 - (int)(Math.log((hostsCount))/Math.log(2)+ ((Math.log((hostsCount))%Math.log(2) == 0) ? 0 : 1));
+    /**
+     * Sizes many IPv6 subnets at once with getRequiredIPv6PrefixLengthForHosts.
+     *
+     * @param hostsCounts the hosts counts
+     * @return the prefix length for each count
+     * @throws IPException if a count is negative
+     */
+    public static int[] getRequiredIPv6PrefixLengthsForHosts(long[] hostsCounts) throws IPException
+    {
+        int[] prefixLengths = new int[hostsCounts.length];
+        for (int i = 0; i < hostsCounts.length; i++)
+        {
+            prefixLengths[i] = getRequiredIPv6PrefixLengthForHosts(hostsCounts[i]);
+        }
+        return prefixLengths;
     }
 
 
@@ -282,6 +433,10 @@ public class SubnetCalcUtil
      */
     public static String getSubnetMaskFromPrefix(int prefixLength)
     {
+        if(prefixLength >= 0 && prefixLength < SUBNET_MASKS.length)
+        {
+            return SUBNET_MASKS[prefixLength];
+        }
         StringBuilder dataHolder = new StringBuilder();
         StringBuilder ipAddressBuilder = new StringBuilder();
         int octetsFormed = 0;
@@ -321,15 +476,64 @@ public class SubnetCalcUtil
 
     /**
      * Gets the maximum amount of hosts in a subnet.
+     * The answer does not fit in an int for a /0 and is
+     * negative for a /32, getUsableHostCount gives exact counts.
      * @param maskLength the length of the subnet mask aka number of network bits
      * @return the maximum hosts in subnet
      */
     public static int getMaximumHostsInSubnet(int maskLength)
     {
+        if(maskLength >= 0 && maskLength < MAXIMUM_HOSTS.length)
+        {
+            return MAXIMUM_HOSTS[maskLength];
+        }
         int hostBits = 32 - maskLength;
         return  (int)(Math.pow(2,(hostBits)) - 2);
     }
 
+    /**
+     * Gets the amount of addresses in an IPv4 subnet,
+     * including the network and broadcast addresses.
+     *
+     * @param prefixLength the prefix length between 0 and 32
+     * @return the amount of addresses
+     * @throws IPException if the prefix length is out of range
+     */
+    public static long getAddressCount(int prefixLength) throws IPException
+    {
+        checkPrefixLength(prefixLength, 32);
+        return 1L << (32 - prefixLength);
+    }
+
+    /**
+     * Gets the amount of hosts that can be given an address
+     * in an IPv4 subnet. Following RFC 3021 a /31 point to point
+     * link has two usable addresses and a /32 has one.
+     *
+     * @param prefixLength the prefix length between 0 and 32
+     * @return the amount of usable addresses
+     * @throws IPException if the prefix length is out of range
+     */
+    public static long getUsableHostCount(int prefixLength) throws IPException
+    {
+        checkPrefixLength(prefixLength, 32);
+        return prefixLength <= 30 ? (1L << (32 - prefixLength)) - 2 : 33 - prefixLength;
+    }
+
+    /**
+     * Gets the amount of addresses in an IPv6 subnet.
+     * IPv6 has no broadcast address so every address is usable.
+     *
+     * @param prefixLength the prefix length between 0 and 128
+     * @return the amount of addresses
+     * @throws IPException if the prefix length is out of range
+     */
+    public static BigInteger getIPv6AddressCount(int prefixLength) throws IPException
+    {
+        checkPrefixLength(prefixLength, 128);
+        return BigInteger.ONE.shiftLeft(128 - prefixLength);
+    }
+
     /**
      * Gets maximum netmask for two addresses.
      * Both addresses must be in the form ###.###.###.###
@@ -370,6 +574,14 @@ public class SubnetCalcUtil
         return maxLength;
     }
 
+    private static void checkPrefixLength(int prefixLength, int maximum)
+    {
+        if(prefixLength < 0 || prefixLength > maximum)
+        {
+            throw new IPException("IPException on SubnetCalcUtil " + prefixLength + " is not a prefix length between 0 and " + maximum + ".");
+        }
+    }
+
     /*
      * It takes the number and if it is
      * divisible by 2, a zero gets added.
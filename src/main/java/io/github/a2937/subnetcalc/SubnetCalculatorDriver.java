@@ -1,10 +1,105 @@
 package io.github.a2937.subnetcalc;
 
+import java.io.IOException;
+
+/**
+ * The command line entry point.
+ * It is meant to be called from shell scripts many times in a row
+ * so it works on ints through IPv4Util and stays away from
+ * regular expressions, reflection and lazily built tables.
+ * <pre>
+ * network   &lt;address&gt; &lt;prefix|mask&gt;
+ * broadcast &lt;address&gt; &lt;prefix|mask&gt;
+ * mask      &lt;prefix&gt;
+ * prefix    &lt;mask&gt;
+ * hosts     &lt;prefix&gt;
+ * size      &lt;hosts&gt;
+ * summarize &lt;address&gt; &lt;address&gt;
+ * serve     [port]
+ * </pre>
+ */
 public class SubnetCalculatorDriver
 {
-    public static void main(String[] args)
+    private static final String USAGE = "Usage: network <address> <prefix|mask> | broadcast <address> <prefix|mask> | "
+            + "mask <prefix> | prefix <mask> | hosts <prefix> | size <hosts> | summarize <address> <address> | serve [port]";
+
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length == 0)
+        {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if(args[0].equals("serve"))
+        {
+            SubnetCalcServer.main(args.length > 1 ? new String[] { args[1] } : new String[0]);
+            return;
+        }
+        try
+        {
+            System.out.println(run(args));
+        }
+        catch (IPException e)
+        {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs a single command and returns what gets printed.
+     *
+     * @param args the command followed by its arguments
+     * @return the result of the command
+     * @throws IPException if the command or its arguments are invalid
+     */
+    static String run(String[] args) throws IPException
     {
+        switch (args[0])
+        {
+            case "network":
+                requireArguments(args, 3);
+                return IPv4Util.calculateNetworkAddress(args[1], args[2]);
+            case "broadcast":
+                requireArguments(args, 3);
+                return IPv4Util.calculateBroadcastAddress(args[1], args[2]);
+            case "mask":
+                requireArguments(args, 2);
+                return IPv4Util.formatAddress(IPv4Util.maskFromPrefix(IPv4Util.parsePrefixOrMask(args[1])));
+            case "prefix":
+                requireArguments(args, 2);
+                return Integer.toString(IPv4Util.parsePrefixOrMask(args[1]));
+            case "hosts":
+                requireArguments(args, 2);
+                return Long.toString(SubnetCalcUtil.getUsableHostCount(IPv4Util.parsePrefixOrMask(args[1])));
+            case "size":
+                requireArguments(args, 2);
+                return Integer.toString(SubnetCalcUtil.getRequiredPrefixLengthForHosts(parseHostsCount(args[1])));
+            case "summarize":
+                requireArguments(args, 3);
+                return IPv4Util.summarize(args[1], args[2]);
+            default:
+                throw new IPException(USAGE);
+        }
+    }
 
-        System.out.println(SubnetCalcUtil.getMaximumNetmaskForTwoAddresses("128.42.5.17","128.42.5.67 "));
+    private static long parseHostsCount(String hostsCount)
+    {
+        try
+        {
+            return Long.parseLong(hostsCount);
+        }
+        catch (NumberFormatException nfe)
+        {
+            throw new IPException(hostsCount + " is not an amount of hosts. " + USAGE, nfe);
+        }
+    }
+
+    private static void requireArguments(String[] args, int count)
+    {
+        if(args.length != count)
+        {
+            throw new IPException(USAGE);
+        }
     }
 }
@@ -0,0 +1,768 @@
+package io.github.a2937.subnetcalc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts requests per subnet over a sliding time window
+ * at several prefix lengths at once, for example
+ * per /24 and per /16 over the last 60 seconds.
+ * <p>
+ * Each prefix length has an open addressed table keyed by the
+ * network address as an int. Every subnet in it owns one counter
+ * per time bucket per stripe. A counter stores the bucket it belongs
+ * to next to its count, so a counter left over from an earlier turn
+ * of the ring is reset by the first update that finds it instead of
+ * by a background sweep. Threads are spread over the stripes so a
+ * single busy subnet is not one contended cache line, the same idea
+ * as LongAdder. Each stripe of a subnet also remembers the last bucket
+ * it was written in, so stripes that saw nothing lately are skipped
+ * when counting and quiet subnets are found without reading every bucket.
+ * <p>
+ * The window is made of the current, partly filled bucket and the
+ * buckets before it, so a count covers between windowMillis minus one
+ * bucket and windowMillis. When a table is three quarters full it is
+ * rebuilt on an executor without the subnets that have gone quiet,
+ * growing if needed. The old table points at the new one before copying
+ * starts, and every key and counter is swapped for a moved marker as it
+ * is copied, so an update that meets a marker follows to the new table
+ * instead of being lost. A table that can still grow and fills up before
+ * its rebuild is done is rebuilt by the request thread that found it
+ * full, or that thread waits for the rebuild already running, so no
+ * update is dropped below the maximum capacity. Counts read during a
+ * rebuild add up both tables and can be off by the few updates being
+ * moved at that moment.
+ * <p>
+ * Tables never grow past a maximum capacity, so a flood of sources
+ * cannot use up the heap. Once a table of that size is three quarters
+ * full, requests from subnets that are not in it yet are dropped and
+ * counted as zero until a rebuild makes room again. Prefix lengths of
+ * 16 or less always get room for every possible network, so only the
+ * longer ones can drop subnets. A table takes about
+ * 8 * (1 + stripes * bucketCount) bytes per slot.
+ */
+public final class SubnetRateCounter
+{
+    private static final int COUNT_BITS = 36;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long EPOCH_MASK = (1L << (64 - COUNT_BITS)) - 1;
+    private static final long OCCUPIED = 1L << 32;
+    private static final long MOVED = 1L << 33;
+    // All ones, which a counter would only reach after 2^36 requests in one bucket.
+    private static final long MOVED_CELL = -1L;
+    private static final int FULL = -1;
+    private static final int MOVED_SLOT = -2;
+    private static final int MAXIMUM_STRIPES = 8;
+
+    private final Level[] levels;
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final int stripes;
+    private final int initialCapacity;
+    private final LongSupplier clock;
+    private final Executor rebuildExecutor;
+    private final LongAdder droppedUpdates = new LongAdder();
+
+    /**
+     * Instantiates a new counter using the system clock.
+     *
+     * @param prefixLengths the prefix lengths to count at
+     * @param windowMillis  the length of the window
+     * @param bucketCount   how many buckets the window is split into
+     */
+    public SubnetRateCounter(int[] prefixLengths, long windowMillis, int bucketCount)
+    {
+        this(prefixLengths, windowMillis, bucketCount, 1 << 12, 1 << 16, System::currentTimeMillis, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Instantiates a new counter.
+     *
+     * @param prefixLengths   the prefix lengths to count at
+     * @param windowMillis    the length of the window
+     * @param bucketCount     how many buckets the window is split into
+     * @param initialCapacity how many subnets each table starts with room for
+     * @param maximumCapacity how many subnets each table may grow to hold room for,
+     *                        raised for short prefix lengths to fit all their networks
+     * @param clock           the source of the current time in milliseconds
+     * @param rebuildExecutor where crowded tables are rebuilt
+     */
+    public SubnetRateCounter(int[] prefixLengths, long windowMillis, int bucketCount, int initialCapacity, int maximumCapacity,
+                             LongSupplier clock, Executor rebuildExecutor)
+    {
+        if(prefixLengths.length == 0 || bucketCount < 1 || windowMillis < bucketCount || initialCapacity < 1)
+        {
+            throw new IllegalArgumentException("A counter needs a prefix length, at least one bucket and a window of at least a millisecond per bucket.");
+        }
+        if(maximumCapacity < initialCapacity || maximumCapacity > 1 << 30)
+        {
+            throw new IllegalArgumentException("The maximum capacity must be between the initial capacity and 2^30.");
+        }
+        this.bucketMillis = windowMillis / bucketCount;
+        this.bucketCount = bucketCount;
+        this.stripes = Math.min(MAXIMUM_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+        this.initialCapacity = Integer.highestOneBit(initialCapacity * 2 - 1);
+        this.clock = clock;
+        this.rebuildExecutor = rebuildExecutor;
+        int roundedMaximum = Integer.highestOneBit(maximumCapacity * 2 - 1);
+        long epoch = currentEpoch();
+        levels = new Level[prefixLengths.length];
+        for (int i = 0; i < prefixLengths.length; i++)
+        {
+            int prefixLength = prefixLengths[i];
+            // Three quarters of 2 << prefixLength still holds all 1 << prefixLength networks.
+            int levelMaximum = prefixLength <= 16 ? Math.max(roundedMaximum, 2 << prefixLength) : roundedMaximum;
+            levels[i] = new Level(prefixLength, levelMaximum);
+            levels[i].table = newTable(levels[i], this.initialCapacity, epoch);
+        }
+    }
+
+    /**
+     * Counts one request from an address at every prefix length.
+     *
+     * @param address the address of the client
+     */
+    public void record(int address)
+    {
+        long epoch = currentEpoch();
+        int stripe = stripe();
+        for (Level level : levels)
+        {
+            increment(level, address & level.mask, epoch, stripe);
+        }
+    }
+
+    /**
+     * Counts one request from an address and returns the counts in the
+     * window, including this request, for every prefix length in the
+     * order they were given to the constructor.
+     *
+     * @param address the address of the client
+     * @param counts  where the count for each prefix length is written
+     */
+    public void recordAndCount(int address, long[] counts)
+    {
+        long epoch = currentEpoch();
+        int stripe = stripe();
+        for (int i = 0; i < levels.length; i++)
+        {
+            Level level = levels[i];
+            int network = address & level.mask;
+            increment(level, network, epoch, stripe);
+            counts[i] = countNetwork(level.table, network, epoch);
+        }
+    }
+
+    /**
+     * Gets the amount of requests in the window
+     * from the subnet holding an address.
+     *
+     * @param address      any address in the subnet
+     * @param prefixLength one of the prefix lengths being counted
+     * @return the amount of requests
+     */
+    public long count(int address, int prefixLength)
+    {
+        Level level = level(prefixLength);
+        return countNetwork(level.table, address & level.mask, currentEpoch());
+    }
+
+    /**
+     * Gets the subnets with the most requests in the window,
+     * busiest first.
+     *
+     * @param prefixLength one of the prefix lengths being counted
+     * @param k            the most subnets to return
+     * @return the busiest subnets
+     * @throws IllegalArgumentException if k is negative
+     */
+    public List<SubnetCount> topK(int prefixLength, int k)
+    {
+        if(k < 0)
+        {
+            throw new IllegalArgumentException("Cannot return " + k + " subnets.");
+        }
+        Level level = level(prefixLength);
+        Table table = level.table;
+        long epoch = currentEpoch();
+
+        // A min heap of the best k so far, kept in two primitive arrays.
+        long[] heapCounts = new long[k];
+        int[] heapNetworks = new int[k];
+        int size = 0;
+        for (int slot = 0; slot < table.capacity && k > 0; slot++)
+        {
+            long key = table.keys.get(slot);
+            if((key & OCCUPIED) == 0)
+            {
+                continue;
+            }
+            // A subnet already moved by a rebuild is counted in the new table too.
+            long count = table.next == null ? windowCount(table, slot, epoch) : countNetwork(table, (int) key, epoch);
+            if(count == 0 || (size == k && count <= heapCounts[0]))
+            {
+                continue;
+            }
+            int position;
+            if(size < k)
+            {
+                position = size++;
+                while (position > 0 && heapCounts[(position - 1) / 2] > count)
+                {
+                    heapCounts[position] = heapCounts[(position - 1) / 2];
+                    heapNetworks[position] = heapNetworks[(position - 1) / 2];
+                    position = (position - 1) / 2;
+                }
+            }
+            else
+            {
+                position = 0;
+                while (true)
+                {
+                    int child = 2 * position + 1;
+                    if(child >= size)
+                    {
+                        break;
+                    }
+                    if(child + 1 < size && heapCounts[child + 1] < heapCounts[child])
+                    {
+                        child++;
+                    }
+                    if(heapCounts[child] >= count)
+                    {
+                        break;
+                    }
+                    heapCounts[position] = heapCounts[child];
+                    heapNetworks[position] = heapNetworks[child];
+                    position = child;
+                }
+            }
+            heapCounts[position] = count;
+            heapNetworks[position] = (int) key;
+        }
+
+        List<SubnetCount> busiest = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+        {
+            busiest.add(new SubnetCount(heapNetworks[i], level.prefixLength, heapCounts[i]));
+        }
+        Collections.sort(busiest, (one, two) -> Long.compare(two.getCount(), one.getCount()));
+        return busiest;
+    }
+
+    /**
+     * Gets how many subnets a prefix length currently has
+     * room reserved for, including ones that went quiet
+     * since the table was last rebuilt.
+     *
+     * @param prefixLength one of the prefix lengths being counted
+     * @return the amount of subnets in the table
+     */
+    public int getTrackedSubnetCount(int prefixLength)
+    {
+        return level(prefixLength).table.size.get();
+    }
+
+    /**
+     * Gets how many updates were dropped because a table
+     * at its maximum capacity was full.
+     *
+     * @return the amount of dropped updates
+     */
+    public long getDroppedUpdates()
+    {
+        return droppedUpdates.sum();
+    }
+
+    private void increment(Level level, int network, long epoch, int stripe)
+    {
+        Table table = level.table;
+        while (true)
+        {
+            while (table.next != null)
+            {
+                table = table.next;
+            }
+            int slot = findOrInsert(table, network, false);
+            if(slot == MOVED_SLOT)
+            {
+                continue;
+            }
+            if(slot == FULL)
+            {
+                if(table.capacity < level.maximumCapacity)
+                {
+                    grow(level, table);
+                    table = level.table;
+                    continue;
+                }
+                droppedUpdates.increment();
+                requestRebuild(level, table, epoch);
+                return;
+            }
+            int touchedIndex = stripe * table.capacity + slot;
+            if(table.touched.get(touchedIndex) != epoch)
+            {
+                table.touched.set(touchedIndex, epoch);
+            }
+            if(!bump(table.cells, cellIndex(table, slot, stripe, (int) (epoch % bucketCount)), epoch & EPOCH_MASK))
+            {
+                continue;
+            }
+            if(table.size.get() > table.capacity - (table.capacity >>> 2))
+            {
+                requestRebuild(level, table, epoch);
+            }
+            return;
+        }
+    }
+
+    /*
+     * Returns false when a rebuild moved the counter away first.
+     */
+    private static boolean bump(AtomicLongArray cells, int index, long epochBits)
+    {
+        while (true)
+        {
+            long cell = cells.get(index);
+            if(cell == MOVED_CELL)
+            {
+                return false;
+            }
+            long updated = cell >>> COUNT_BITS == epochBits ? cell + 1 : (epochBits << COUNT_BITS) | 1;
+            if(cells.compareAndSet(index, cell, updated))
+            {
+                return true;
+            }
+        }
+    }
+
+    /*
+     * Adds up a subnet in a table and in the table a rebuild
+     * is moving it to, if there is one.
+     */
+    private long countNetwork(Table table, int network, long epoch)
+    {
+        long count = 0;
+        while (table != null)
+        {
+            int slot = find(table, network);
+            if(slot >= 0)
+            {
+                count += windowCount(table, slot, epoch);
+            }
+            table = table.next;
+        }
+        return count;
+    }
+
+    private long windowCount(Table table, int slot, long epoch)
+    {
+        long count = 0;
+        for (int stripe = 0; stripe < stripes; stripe++)
+        {
+            if(epoch - table.touched.get(stripe * table.capacity + slot) >= bucketCount)
+            {
+                continue;
+            }
+            int index = cellIndex(table, slot, stripe, 0);
+            for (int bucket = 0; bucket < bucketCount; bucket++)
+            {
+                long cell = table.cells.get(index + bucket);
+                long age = (epoch - (cell >>> COUNT_BITS)) & EPOCH_MASK;
+                count += age < bucketCount && cell != MOVED_CELL ? cell & COUNT_MASK : 0;
+            }
+        }
+        return count;
+    }
+
+    private boolean isLive(Table table, int slot, long epoch)
+    {
+        for (int stripe = 0; stripe < stripes; stripe++)
+        {
+            if(epoch - table.touched.get(stripe * table.capacity + slot) < bucketCount)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isFresh(long cell, long epoch)
+    {
+        // A thread that read the clock after the rebuild did may already be in a later bucket.
+        long age = (epoch - (cell >>> COUNT_BITS)) & EPOCH_MASK;
+        return cell != MOVED_CELL && (cell & COUNT_MASK) != 0 && (age < bucketCount || age > EPOCH_MASK - bucketCount);
+    }
+
+    /*
+     * A rebuild moving a subnet in ignores the limit and uses up the room set aside for it.
+     */
+    private int findOrInsert(Table table, int network, boolean moving)
+    {
+        long key = OCCUPIED | (network & 0xFFFFFFFFL);
+        int slot = hash(network) & table.mask;
+        for (int probes = 0; probes < table.capacity; probes++)
+        {
+            long existing = table.keys.get(slot);
+            if(existing == 0)
+            {
+                if(!moving && table.size.get() >= table.limit)
+                {
+                    return FULL;
+                }
+                if(table.keys.compareAndSet(slot, 0, key))
+                {
+                    if(moving && table.reserved > 0)
+                    {
+                        table.reserved--;
+                    }
+                    else
+                    {
+                        table.size.incrementAndGet();
+                    }
+                    return slot;
+                }
+                // Someone else took the slot, it may have been for the same subnet or a rebuild.
+                existing = table.keys.get(slot);
+            }
+            if(existing == key)
+            {
+                return slot;
+            }
+            if((existing & MOVED) != 0)
+            {
+                return MOVED_SLOT;
+            }
+            slot = (slot + 1) & table.mask;
+        }
+        return FULL;
+    }
+
+    private int find(Table table, int network)
+    {
+        long key = OCCUPIED | (network & 0xFFFFFFFFL);
+        int slot = hash(network) & table.mask;
+        for (int probes = 0; probes < table.capacity; probes++)
+        {
+            long existing = table.keys.get(slot) & ~MOVED;
+            if(existing == key)
+            {
+                return slot;
+            }
+            if(existing == 0)
+            {
+                return -1;
+            }
+            slot = (slot + 1) & table.mask;
+        }
+        return -1;
+    }
+
+    /*
+     * Only one rebuild of a level runs at a time and at most one waits
+     * on the executor. A table that cannot grow any more is rebuilt at
+     * most once a bucket, since only a bucket ending can make more of
+     * its subnets go quiet.
+     */
+    private void requestRebuild(Level level, Table old, long epoch)
+    {
+        if(level.table != old || (old.capacity == level.maximumCapacity && old.checkedEpoch == epoch)
+                || level.rebuildQueued.get() || !level.rebuildQueued.compareAndSet(false, true))
+        {
+            return;
+        }
+        try
+        {
+            rebuildExecutor.execute(() ->
+            {
+                level.rebuildQueued.set(false);
+                tryRebuild(level, old);
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            // Try again on a later update.
+            level.rebuildQueued.set(false);
+        }
+    }
+
+    /*
+     * Waits until a table that filled up before its rebuild was done has
+     * been replaced, rebuilding it on this thread unless another one is.
+     */
+    private void grow(Level level, Table full)
+    {
+        while (true)
+        {
+            if(level.table == full)
+            {
+                if(tryRebuild(level, full))
+                {
+                    return;
+                }
+            }
+            else if(!level.rebuilding.get())
+            {
+                return;
+            }
+            Thread.yield();
+        }
+    }
+
+    private boolean tryRebuild(Level level, Table old)
+    {
+        if(level.table != old || !level.rebuilding.compareAndSet(false, true))
+        {
+            return false;
+        }
+        try
+        {
+            if(level.table == old)
+            {
+                rebuild(level, old);
+            }
+            return true;
+        }
+        finally
+        {
+            level.rebuilding.set(false);
+        }
+    }
+
+    private void rebuild(Level level, Table old)
+    {
+        long epoch = currentEpoch();
+        int live = 0;
+        for (int slot = 0; slot < old.capacity; slot++)
+        {
+            if(old.keys.get(slot) != 0 && isLive(old, slot, epoch))
+            {
+                live++;
+            }
+        }
+        if(old.capacity == level.maximumCapacity && live >= old.limit)
+        {
+            // Nothing has gone quiet yet, so a new table would be just as full.
+            old.checkedEpoch = epoch;
+            return;
+        }
+        int capacity = initialCapacity;
+        while (capacity < live * 2 && capacity < level.maximumCapacity)
+        {
+            capacity <<= 1;
+        }
+        Table table = newTable(level, capacity, epoch);
+        // Threads that follow to the new table must not take the room the live subnets are moved into.
+        table.reserved = live;
+        table.size.set(live);
+        old.next = table;
+        for (int slot = 0; slot < old.capacity; slot++)
+        {
+            move(old, slot, table, epoch);
+        }
+        table.size.addAndGet(-table.reserved);
+        table.reserved = 0;
+        level.table = table;
+    }
+
+    /*
+     * Swaps the key and counters of a slot for moved markers and adds the
+     * counters still in the window to the new table. A thread that reaches
+     * a marker writes to the new table instead, so no update is lost.
+     */
+    private void move(Table old, int slot, Table table, long epoch)
+    {
+        long key = old.keys.get(slot);
+        while (!old.keys.compareAndSet(slot, key, key | MOVED))
+        {
+            key = old.keys.get(slot);
+        }
+        if(key == 0)
+        {
+            return;
+        }
+        int newSlot = MOVED_SLOT;
+        for (int stripe = 0; stripe < stripes; stripe++)
+        {
+            int from = cellIndex(old, slot, stripe, 0);
+            boolean merged = false;
+            for (int bucket = 0; bucket < bucketCount; bucket++)
+            {
+                long cell = old.cells.getAndSet(from + bucket, MOVED_CELL);
+                if(!isFresh(cell, epoch))
+                {
+                    continue;
+                }
+                if(newSlot == MOVED_SLOT)
+                {
+                    newSlot = findOrInsert(table, (int) key, true);
+                }
+                if(newSlot == FULL)
+                {
+                    // Only happens when more subnets came back to life during the rebuild than the table has free slots.
+                    droppedUpdates.add(cell & COUNT_MASK);
+                    continue;
+                }
+                merge(table.cells, cellIndex(table, newSlot, stripe, bucket), cell);
+                merged = true;
+            }
+            if(merged)
+            {
+                table.touched.accumulateAndGet(stripe * table.capacity + newSlot, old.touched.get(stripe * old.capacity + slot), Math::max);
+            }
+        }
+    }
+
+    private static void merge(AtomicLongArray cells, int index, long cell)
+    {
+        while (true)
+        {
+            long current = cells.get(index);
+            long merged = current >>> COUNT_BITS == cell >>> COUNT_BITS ? current + (cell & COUNT_MASK) : cell;
+            if(cells.compareAndSet(index, current, merged))
+            {
+                return;
+            }
+        }
+    }
+
+    private Table newTable(Level level, int capacity, long epoch)
+    {
+        // A table waiting to grow may fill up further while it is being rebuilt,
+        // but never completely, so probe chains stay short.
+        int limit = capacity == level.maximumCapacity ? capacity - (capacity >>> 2) : capacity - (capacity >>> 3);
+        AtomicLongArray touched = new AtomicLongArray(capacity * stripes);
+        for (int i = 0; i < touched.length(); i++)
+        {
+            touched.set(i, Long.MIN_VALUE / 2);
+        }
+        return new Table(capacity, limit, epoch, new AtomicLongArray(capacity), touched, new AtomicLongArray(capacity * stripes * bucketCount));
+    }
+
+    /*
+     * Stripe major so two threads bumping the same subnet
+     * write to different cache lines.
+     */
+    private int cellIndex(Table table, int slot, int stripe, int bucket)
+    {
+        return ((stripe * table.capacity) + slot) * bucketCount + bucket;
+    }
+
+    private long currentEpoch()
+    {
+        return clock.getAsLong() / bucketMillis;
+    }
+
+    private int stripe()
+    {
+        return (int) Thread.currentThread().getId() & (stripes - 1);
+    }
+
+    private Level level(int prefixLength)
+    {
+        for (Level level : levels)
+        {
+            if(level.prefixLength == prefixLength)
+            {
+                return level;
+            }
+        }
+        throw new IllegalArgumentException("/" + prefixLength + " is not one of the prefix lengths being counted.");
+    }
+
+    private static int hash(int network)
+    {
+        int h = network * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * The amount of requests from one subnet in the window.
+     */
+    public static final class SubnetCount
+    {
+        private final int networkAddress;
+        private final int prefixLength;
+        private final long count;
+
+        private SubnetCount(int networkAddress, int prefixLength, long count)
+        {
+            this.networkAddress = networkAddress;
+            this.prefixLength = prefixLength;
+            this.count = count;
+        }
+
+        public int getNetworkAddress()
+        {
+            return networkAddress;
+        }
+
+        public int getPrefixLength()
+        {
+            return prefixLength;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public String toString()
+        {
+            return IPv4Util.formatAddress(networkAddress) + "/" + prefixLength + "=" + count;
+        }
+    }
+
+    private static final class Level
+    {
+        private final int prefixLength;
+        private final int mask;
+        private final int maximumCapacity;
+        private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+        private final AtomicBoolean rebuilding = new AtomicBoolean();
+        private volatile Table table;
+
+        private Level(int prefixLength, int maximumCapacity)
+        {
+            this.prefixLength = prefixLength;
+            this.mask = IPv4Util.maskFromPrefix(prefixLength);
+            this.maximumCapacity = maximumCapacity;
+        }
+    }
+
+    private static final class Table
+    {
+        private final int capacity;
+        private final int mask;
+        private final int limit;
+        private volatile long checkedEpoch;
+        private volatile Table next;
+        private int reserved;
+        private final AtomicLongArray keys;
+        private final AtomicLongArray touched;
+        private final AtomicLongArray cells;
+        private final AtomicInteger size = new AtomicInteger();
+
+        private Table(int capacity, int limit, long checkedEpoch, AtomicLongArray keys, AtomicLongArray touched, AtomicLongArray cells)
+        {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.limit = limit;
+            this.checkedEpoch = checkedEpoch;
+            this.keys = keys;
+            this.touched = touched;
+            this.cells = cells;
+        }
+    }
+}
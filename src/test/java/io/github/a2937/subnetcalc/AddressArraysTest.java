@@ -0,0 +1,170 @@
+package io.github.a2937.subnetcalc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * AddressArrays Tester.
+ */
+public class AddressArraysTest {
+
+/**
+ *
+ * Method: compare(int addressOne, int addressTwo), isInRange(int address, int start, int end)
+ * 128.0.0.0 and up must come after 127.255.255.255.
+ */
+@Test
+public void testUnsignedComparisons() throws Exception
+{
+    int low = IPv4Util.parseAddress("127.255.255.255");
+    int high = IPv4Util.parseAddress("128.0.0.0");
+    Assert.assertTrue(AddressArrays.compare(low, high) < 0);
+    Assert.assertTrue(AddressArrays.UNSIGNED_ORDER.compare(high, low) > 0);
+    Assert.assertTrue(AddressArrays.isInRange(high, low, IPv4Util.parseAddress("200.0.0.0")));
+    Assert.assertFalse(AddressArrays.isInRange(IPv4Util.parseAddress("200.0.0.1"), low, IPv4Util.parseAddress("200.0.0.0")));
+    Assert.assertTrue(AddressArrays.isInRange(-1, 0, -1));
+}
+
+/**
+ *
+ * Method: sort(int[] addresses)
+ * Sizes around every switch between sort strategies are compared
+ * with sorting boxed addresses.
+ */
+@Test
+public void testSort() throws Exception
+{
+    Random random = new Random(5);
+    int[] sizes = { 0, 1, 2, 1023, 1024, 5000, (1 << 18) - 1, 1 << 18, 300000 };
+    for (int size : sizes)
+    {
+        int[] addresses = randomAddresses(random, size);
+        int[] expected = sortedBoxed(addresses);
+        AddressArrays.sort(addresses);
+        Assert.assertArrayEquals(expected, addresses);
+    }
+}
+
+/**
+ *
+ * Method: sort(int[] addresses, int from, int to)
+ * Only the given part is touched.
+ */
+@Test
+public void testSortPart() throws Exception
+{
+    int[] addresses = randomAddresses(new Random(6), 4000);
+    int[] copy = addresses.clone();
+    AddressArrays.sort(addresses, 100, 3900);
+    Assert.assertArrayEquals(Arrays.copyOfRange(copy, 0, 100), Arrays.copyOfRange(addresses, 0, 100));
+    Assert.assertArrayEquals(Arrays.copyOfRange(copy, 3900, 4000), Arrays.copyOfRange(addresses, 3900, 4000));
+    Assert.assertArrayEquals(sortedBoxed(Arrays.copyOfRange(copy, 100, 3900)), Arrays.copyOfRange(addresses, 100, 3900));
+}
+
+/**
+ *
+ * Method: parallelSort(int[] addresses, int parallelism)
+ * The parallelism is given explicitly so the chunked passes
+ * run even where the common pool has a single thread.
+ */
+@Test
+public void testParallelSort() throws Exception
+{
+    int[] addresses = randomAddresses(new Random(7), 3000000);
+    int[] expected = addresses.clone();
+    AddressArrays.sort(expected);
+    for (int parallelism : new int[] { 2, 3, 8 })
+    {
+        int[] copy = addresses.clone();
+        AddressArrays.parallelSort(copy, parallelism);
+        Assert.assertArrayEquals(expected, copy);
+    }
+    AddressArrays.parallelSort(addresses);
+    Assert.assertArrayEquals(expected, addresses);
+}
+
+/**
+ *
+ * Method: sortInPlace(int[] addresses), parallelSortInPlace(int[] addresses, int parallelism)
+ */
+@Test
+public void testSortInPlace() throws Exception
+{
+    Random random = new Random(8);
+    int[] sizes = { 0, 1, 1023, 1024, 5000, 300000, 3000000 };
+    for (int size : sizes)
+    {
+        int[] addresses = randomAddresses(random, size);
+        int[] expected = addresses.clone();
+        AddressArrays.sort(expected);
+        int[] copy = addresses.clone();
+        AddressArrays.sortInPlace(copy);
+        Assert.assertArrayEquals(expected, copy);
+        AddressArrays.parallelSortInPlace(addresses, 2);
+        Assert.assertArrayEquals(expected, addresses);
+    }
+}
+
+/**
+ *
+ * Method: dedupSorted(int[] sortedAddresses)
+ */
+@Test
+public void testDedupSorted() throws Exception
+{
+    int[] addresses = { 1, 1, 2, 5, 5, 5, -3, -1, -1 };
+    int distinct = AddressArrays.dedupSorted(addresses);
+    Assert.assertEquals(5, distinct);
+    Assert.assertArrayEquals(new int[] { 1, 2, 5, -3, -1 }, Arrays.copyOf(addresses, distinct));
+    Assert.assertEquals(0, AddressArrays.dedupSorted(new int[0]));
+}
+
+/**
+ *
+ * Method: commonPrefixLength(int[] sortedAddresses), commonPrefixLengths(int[] sortedAddresses, int[] prefixLengths)
+ */
+@Test
+public void testCommonPrefixLengths() throws Exception
+{
+    int[] addresses = {
+            IPv4Util.parseAddress("128.42.5.17"),
+            IPv4Util.parseAddress("128.42.5.67"),
+            IPv4Util.parseAddress("128.42.5.68"),
+            IPv4Util.parseAddress("128.42.7.1") };
+    Assert.assertEquals(22, AddressArrays.commonPrefixLength(addresses));
+    int[] prefixLengths = new int[3];
+    AddressArrays.commonPrefixLengths(addresses, prefixLengths);
+    Assert.assertArrayEquals(new int[] { 25, 29, 22 }, prefixLengths);
+}
+
+private static int[] randomAddresses(Random random, int size)
+{
+    int[] addresses = new int[size];
+    for (int i = 0; i < size; i++)
+    {
+        // Mix in repeats and a narrow band so some digit passes are skipped.
+        addresses[i] = random.nextInt(4) == 0 ? 0x0A000000 | random.nextInt(256) : random.nextInt();
+    }
+    return addresses;
+}
+
+private static int[] sortedBoxed(int[] addresses)
+{
+    Integer[] boxed = new Integer[addresses.length];
+    for (int i = 0; i < addresses.length; i++)
+    {
+        boxed[i] = addresses[i];
+    }
+    Arrays.sort(boxed, AddressArrays.UNSIGNED_ORDER);
+    int[] sorted = new int[addresses.length];
+    for (int i = 0; i < addresses.length; i++)
+    {
+        sorted[i] = boxed[i];
+    }
+    return sorted;
+}
+
+}
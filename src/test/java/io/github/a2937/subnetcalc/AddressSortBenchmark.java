@@ -0,0 +1,70 @@
+package io.github.a2937.subnetcalc;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the radix sorts with sorting boxed addresses
+ * and with Arrays.sort on sign flipped ints.
+ * <p>
+ * Arguments: optionally the amount of addresses.
+ * Run it through {@code gradle addressSortBenchmark}.
+ */
+public class AddressSortBenchmark
+{
+    public static void main(String[] args)
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000000;
+        Random random = new Random(13);
+        int[] addresses = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            addresses[i] = random.nextInt();
+        }
+
+        for (int round = 0; round < 3; round++)
+        {
+            System.out.println("Round " + (round + 1) + ", " + count + " addresses");
+            time("radix sort", addresses, AddressArrays::sort);
+            time("parallel radix sort", addresses, AddressArrays::parallelSort);
+            time("in place radix sort", addresses, AddressArrays::sortInPlace);
+            time("Arrays.sort on flipped ints", addresses, copy ->
+            {
+                for (int i = 0; i < copy.length; i++)
+                {
+                    copy[i] ^= Integer.MIN_VALUE;
+                }
+                Arrays.sort(copy);
+                for (int i = 0; i < copy.length; i++)
+                {
+                    copy[i] ^= Integer.MIN_VALUE;
+                }
+            });
+            if(round == 2)
+            {
+                time("Arrays.sort on boxed", addresses, copy ->
+                {
+                    Integer[] boxed = new Integer[copy.length];
+                    for (int i = 0; i < copy.length; i++)
+                    {
+                        boxed[i] = copy[i];
+                    }
+                    Arrays.sort(boxed, AddressArrays.UNSIGNED_ORDER);
+                });
+            }
+        }
+    }
+
+    private interface Sorter
+    {
+        void sort(int[] addresses);
+    }
+
+    private static void time(String name, int[] addresses, Sorter sorter)
+    {
+        int[] copy = addresses.clone();
+        long start = System.nanoTime();
+        sorter.sort(copy);
+        System.out.printf("  %-28s %8.1f ms%n", name, (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.a2937.subnetcalc;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures single and bulk lookups per second on one
+ * thread against a database of random /24 to /16 prefixes,
+ * next to a plain binary search over the sorted ranges.
+ * <p>
+ * Arguments: optionally the amount of ranges and lookups.
+ * Run it through {@code gradle rangeDatabaseBenchmark}.
+ */
+public class IPRangeDatabaseBenchmark
+{
+    public static void main(String[] args)
+    {
+        int rangeCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        int lookupCount = args.length > 1 ? Integer.parseInt(args[1]) : 10000000;
+        Random random = new Random(11);
+
+        long buildStart = System.nanoTime();
+        IPRangeDatabase.Builder<Integer> builder = IPRangeDatabase.builder();
+        long next = 0;
+        long step = (1L << 32) / rangeCount;
+        for (int i = 0; i < rangeCount; i++)
+        {
+            int prefixLength = 24 - random.nextInt(Math.max(1, 32 - Long.numberOfLeadingZeros(step) - 8) + 1);
+            builder.addCidr((int) next, prefixLength, i & 0xFFFF);
+            next += Math.max(step, 1L << (32 - prefixLength));
+            next = (next + 255) & ~255L;
+            if(next >= (1L << 32))
+            {
+                break;
+            }
+        }
+        IPRangeDatabase<Integer> database = builder.build();
+        System.out.printf("%d ranges built in %.1f ms%n", database.getRangeCount(), (System.nanoTime() - buildStart) / 1e6);
+
+        int[] addresses = new int[lookupCount];
+        for (int i = 0; i < lookupCount; i++)
+        {
+            addresses[i] = random.nextInt();
+        }
+        int[] results = new int[lookupCount];
+
+        int count = database.getRangeCount();
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        for (int rank = 0; rank < count; rank++)
+        {
+            starts[rank] = database.getRangeStart(rank) ^ Integer.MIN_VALUE;
+            ends[rank] = database.getRangeEnd(rank) ^ Integer.MIN_VALUE;
+        }
+
+        for (int round = 0; round < 3; round++)
+        {
+            single(database, addresses, results);
+            binarySearch(database, starts, ends, addresses, results);
+            database.lookupValueIndexes(addresses, results);
+        }
+
+        long start = System.nanoTime();
+        long hits = binarySearch(database, starts, ends, addresses, results);
+        report("binary search", lookupCount, System.nanoTime() - start, hits);
+
+        start = System.nanoTime();
+        hits = single(database, addresses, results);
+        report("single", lookupCount, System.nanoTime() - start, hits);
+
+        start = System.nanoTime();
+        database.lookupValueIndexes(addresses, results);
+        long elapsed = System.nanoTime() - start;
+        hits = 0;
+        for (int result : results)
+        {
+            hits += result >= 0 ? 1 : 0;
+        }
+        report("bulk", lookupCount, elapsed, hits);
+    }
+
+    private static long single(IPRangeDatabase<Integer> database, int[] addresses, int[] results)
+    {
+        long hits = 0;
+        for (int i = 0; i < addresses.length; i++)
+        {
+            results[i] = database.lookupValueIndex(addresses[i]);
+            hits += results[i] >= 0 ? 1 : 0;
+        }
+        return hits;
+    }
+
+    private static long binarySearch(IPRangeDatabase<Integer> database, int[] starts, int[] ends, int[] addresses, int[] results)
+    {
+        long hits = 0;
+        for (int i = 0; i < addresses.length; i++)
+        {
+            int key = addresses[i] ^ Integer.MIN_VALUE;
+            int position = Arrays.binarySearch(starts, key);
+            int rank = position >= 0 ? position : -position - 2;
+            results[i] = rank >= 0 && key <= ends[rank] ? database.getRangeValueIndex(rank) : -1;
+            hits += results[i] >= 0 ? 1 : 0;
+        }
+        return hits;
+    }
+
+    private static void report(String name, int lookups, long nanos, long hits)
+    {
+        System.out.printf("%-13s %.1f million lookups/s on one thread, %.1f%% hit%n", name,
+                lookups / (nanos / 1e9) / 1e6, 100.0 * hits / lookups);
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.a2937.subnetcalc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Random;
+
+/**
+ * IPRangeDatabase Tester.
+ */
+public class IPRangeDatabaseTest {
+
+/**
+ *
+ * Method: load(Reader reader)
+ * Prefixes and ranges on both sides of 128.0.0.0 are read from text.
+ */
+@Test
+public void testLoad() throws Exception
+{
+    IPRangeDatabase<String> database = IPRangeDatabase.load(new StringReader(
+            "# asn table\n"
+            + "10.0.0.0/8 AS1\n"
+            + "192.168.1.0/24,AS2\n"
+            + "\n"
+            + "200.0.0.0-200.0.0.9\tAS3\n"
+            + "255.255.255.255/32 AS2\n"));
+
+    Assert.assertEquals(4, database.getRangeCount());
+    Assert.assertEquals(3, database.getValueCount());
+    Assert.assertEquals("AS1", database.lookup("10.200.1.1"));
+    Assert.assertEquals("AS2", database.lookup("192.168.1.255"));
+    Assert.assertNull(database.lookup("192.168.2.0"));
+    Assert.assertEquals("AS3", database.lookup("200.0.0.9"));
+    Assert.assertNull(database.lookup("200.0.0.10"));
+    Assert.assertEquals("AS2", database.lookup("255.255.255.255"));
+    Assert.assertNull(database.lookup("0.0.0.0"));
+    Assert.assertNull(database.lookup("127.255.255.255"));
+}
+
+/**
+ *
+ * Method: build()
+ * Overlapping ranges are rejected.
+ */
+@Test
+public void testOverlappingRangesAreRejected() throws Exception
+{
+    IPRangeDatabase.Builder<String> builder = IPRangeDatabase.<String>builder()
+            .addCidr("10.0.0.0/8", "big")
+            .addCidr("10.1.0.0/16", "small");
+    try
+    {
+        builder.build();
+        Assert.fail("the ranges overlap");
+    }
+    catch (IPException expected)
+    {
+    }
+}
+
+/**
+ *
+ * Method: lookupValueIndex(int address), lookupValueIndexes(int[] addresses, int[] valueIndexes)
+ * Random ranges must give the same answers as checking every range.
+ */
+@Test
+public void testLookupMatchesLinearScan() throws Exception
+{
+    Random random = new Random(3);
+    IPRangeDatabase.Builder<Integer> builder = IPRangeDatabase.builder();
+    int ranges = 5000;
+    int[] starts = new int[ranges];
+    int[] ends = new int[ranges];
+    long next = 0;
+    for (int i = 0; i < ranges; i++)
+    {
+        next += random.nextInt(1 << 20);
+        starts[i] = (int) next;
+        next += random.nextInt(1 << 19);
+        ends[i] = (int) next;
+        next++;
+        builder.addRange(starts[i], ends[i], i % 97);
+    }
+    IPRangeDatabase<Integer> database = builder.build();
+
+    int[] addresses = new int[20000];
+    for (int i = 0; i < addresses.length; i++)
+    {
+        addresses[i] = random.nextBoolean() ? random.nextInt() : starts[random.nextInt(ranges)] + random.nextInt(3) - 1;
+    }
+    int[] bulk = new int[addresses.length];
+    database.lookupValueIndexes(addresses, bulk);
+
+    for (int i = 0; i < addresses.length; i++)
+    {
+        Integer expected = null;
+        for (int r = 0; r < ranges; r++)
+        {
+            if(Integer.compareUnsigned(addresses[i], starts[r]) >= 0 && Integer.compareUnsigned(addresses[i], ends[r]) <= 0)
+            {
+                expected = r % 97;
+            }
+        }
+        Assert.assertEquals(expected, database.lookup(addresses[i]));
+        Assert.assertEquals(expected == null ? -1 : database.lookupValueIndex(addresses[i]), bulk[i]);
+    }
+}
+
+/**
+ *
+ * Method: lookup(int address)
+ * An empty database holds nothing.
+ */
+@Test
+public void testEmptyDatabase() throws Exception
+{
+    IPRangeDatabase<String> database = IPRangeDatabase.<String>builder().build();
+    Assert.assertNull(database.lookup(0));
+    Assert.assertNull(database.lookup(-1));
+    int[] results = new int[1];
+    database.lookupValueIndexes(new int[] { 5 }, results);
+    Assert.assertEquals(-1, results[0]);
+}
+
+}
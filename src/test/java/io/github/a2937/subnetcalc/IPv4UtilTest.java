@@ -0,0 +1,124 @@
+package io.github.a2937.subnetcalc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * IPv4Util Tester.
+ */
+public class IPv4UtilTest {
+
+/**
+ *
+ * Method: parseAddress(String address)
+ * Addresses in the upper half turn into negative ints.
+ */
+@Test
+public void testParseAddress() throws Exception
+{
+    Assert.assertEquals(0xC0A80002, IPv4Util.parseAddress("192.168.0.2"));
+    Assert.assertEquals(0x0A000001, IPv4Util.parseAddress(" 10.0.0.1 "));
+    Assert.assertEquals(0xFFFFFFFF, IPv4Util.parseAddress("255.255.255.255"));
+    Assert.assertEquals(0xC0A80002, IPv4Util.parseAddress("192.168.000.002"));
+}
+
+/**
+ *
+ * Method: parseAddress(String address)
+ * Anything that is not four sections between 0 and 255 is rejected.
+ */
+@Test
+public void testParseAddressRejectsMalformed() throws Exception
+{
+    String[] malformed = { "", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1..2.3", "1.2.3.", "a.b.c.d", "1.2.3.0004" };
+    for (String address : malformed)
+    {
+        try
+        {
+            IPv4Util.parseAddress(address);
+            Assert.fail(address + " should not parse");
+        }
+        catch (IPException expected)
+        {
+        }
+    }
+}
+
+/**
+ *
+ * Method: formatAddress(int address)
+ */
+@Test
+public void testFormatAddress() throws Exception
+{
+    Assert.assertEquals("192.168.0.2", IPv4Util.formatAddress(0xC0A80002));
+    Assert.assertEquals("0.0.0.0", IPv4Util.formatAddress(0));
+}
+
+/**
+ *
+ * Method: maskFromPrefix(int prefixLength), prefixFromMask(int mask)
+ * Every prefix length should round trip through its mask.
+ */
+@Test
+public void testMaskAndPrefix() throws Exception
+{
+    for (int i = 0; i <= 32; i++)
+    {
+        Assert.assertEquals(i, IPv4Util.prefixFromMask(IPv4Util.maskFromPrefix(i)));
+    }
+    Assert.assertEquals(24, IPv4Util.parsePrefixOrMask("255.255.255.0"));
+    Assert.assertEquals(9, IPv4Util.parsePrefixOrMask("9"));
+}
+
+/**
+ *
+ * Method: networkAddress(int address, int prefixLength), broadcastAddress(int address, int prefixLength)
+ */
+@Test
+public void testNetworkAndBroadcastAddress() throws Exception
+{
+    int address = IPv4Util.parseAddress("192.168.0.200");
+    Assert.assertEquals("192.168.0.128", IPv4Util.formatAddress(IPv4Util.networkAddress(address, 25)));
+    Assert.assertEquals("192.168.0.255", IPv4Util.formatAddress(IPv4Util.broadcastAddress(address, 25)));
+    Assert.assertEquals("0.0.0.0", IPv4Util.formatAddress(IPv4Util.networkAddress(address, 0)));
+}
+
+/**
+ *
+ * Method: commonPrefixLength(int addressOne, int addressTwo)
+ */
+@Test
+public void testCommonPrefixLength() throws Exception
+{
+    Assert.assertEquals(25, IPv4Util.commonPrefixLength(IPv4Util.parseAddress("128.42.5.17"), IPv4Util.parseAddress("128.42.5.67")));
+    Assert.assertEquals(32, IPv4Util.commonPrefixLength(1, 1));
+}
+
+/**
+ *
+ * Method: calculateNetworkAddress(String address, String prefixOrMask), calculateBroadcastAddress(String address, String prefixOrMask)
+ */
+@Test
+public void testStringHelpers() throws Exception
+{
+    Assert.assertEquals("192.168.0.0", IPv4Util.calculateNetworkAddress("192.168.0.2", "24"));
+    Assert.assertEquals("192.168.0.255", IPv4Util.calculateBroadcastAddress("192.168.0.2", "255.255.255.0"));
+    Assert.assertEquals("0.0.0.0", IPv4Util.calculateNetworkAddress("200.1.2.3", "0"));
+}
+
+/**
+ *
+ * Method: contains(String cidr, String address), summarize(String addressOne, String addressTwo)
+ */
+@Test
+public void testContainsAndSummarize() throws Exception
+{
+    Assert.assertTrue(IPv4Util.contains("192.168.0.0/24", "192.168.0.9"));
+    Assert.assertFalse(IPv4Util.contains("192.168.0.0/24", "192.168.1.9"));
+    Assert.assertTrue(IPv4Util.contains("0.0.0.0/0", "1.2.3.4"));
+    Assert.assertEquals("128.42.5.0/25", IPv4Util.summarize("128.42.5.17", "128.42.5.67"));
+    Assert.assertEquals("0.0.0.0/0", IPv4Util.summarize("1.0.0.0", "200.0.0.0"));
+}
+
+}
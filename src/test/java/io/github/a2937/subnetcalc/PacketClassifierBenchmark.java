@@ -0,0 +1,62 @@
+package io.github.a2937.subnetcalc;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how many packets per second one thread
+ * can classify with the bulk API.
+ * <p>
+ * Arguments: optionally the amount of rules and packets.
+ * Run it through {@code gradle classifierBenchmark}.
+ */
+public class PacketClassifierBenchmark
+{
+    public static void main(String[] args)
+    {
+        int ruleCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int packetCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        Random random = new Random(7);
+
+        long buildStart = System.nanoTime();
+        List<PacketRule> rules = PacketClassifierTest.randomRules(random, ruleCount);
+        PacketClassifier classifier = new PacketClassifier(rules);
+        System.out.printf("%d rules in %d tuples built in %.1f ms%n", ruleCount, classifier.getTupleCount(),
+                (System.nanoTime() - buildStart) / 1e6);
+
+        int[] sources = new int[packetCount];
+        int[] destinations = new int[packetCount];
+        int[] sourcePorts = new int[packetCount];
+        int[] destinationPorts = new int[packetCount];
+        int[] protocols = new int[packetCount];
+        for (int i = 0; i < packetCount; i++)
+        {
+            PacketRule near = rules.get(random.nextInt(ruleCount));
+            sources[i] = near.getSourceAddress() | (random.nextInt() & 0xFFF);
+            destinations[i] = near.getDestinationAddress() | (random.nextInt() & 0xFF);
+            sourcePorts[i] = random.nextInt(65536);
+            destinationPorts[i] = random.nextInt(2048);
+            protocols[i] = random.nextBoolean() ? 6 : 17;
+        }
+        int[] results = new int[packetCount];
+
+        for (int round = 0; round < 5; round++)
+        {
+            classifier.classify(sources, destinations, sourcePorts, destinationPorts, protocols, results);
+        }
+        long matched = 0;
+        long start = System.nanoTime();
+        int rounds = 10;
+        for (int round = 0; round < rounds; round++)
+        {
+            classifier.classify(sources, destinations, sourcePorts, destinationPorts, protocols, results);
+            for (int result : results)
+            {
+                matched += result >= 0 ? 1 : 0;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%.2f million packets/s on one thread, %.1f%% matched%n",
+                (double) packetCount * rounds / seconds / 1e6, 100.0 * matched / ((double) packetCount * rounds));
+    }
+}
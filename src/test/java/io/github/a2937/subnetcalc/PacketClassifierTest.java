@@ -0,0 +1,156 @@
+package io.github.a2937.subnetcalc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * PacketClassifier Tester.
+ */
+public class PacketClassifierTest {
+
+private static final int TCP = 6;
+private static final int UDP = 17;
+
+/**
+ *
+ * Method: classify(int source, int destination, int sourcePort, int destinationPort, int protocol)
+ * A small rule set where the more specific rules have a higher priority.
+ */
+@Test
+public void testClassify() throws Exception
+{
+    List<PacketRule> rules = Arrays.asList(
+            new PacketRule(10, "0.0.0.0/0", "0.0.0.0/0", 0, 65535, 0, 65535, PacketRule.ANY_PROTOCOL),
+            new PacketRule(50, "10.0.0.0/8", "192.168.1.0/24", 0, 65535, 443, 443, TCP),
+            new PacketRule(60, "10.1.0.0/16", "192.168.1.7/32", 0, 65535, 0, 1023, PacketRule.ANY_PROTOCOL),
+            new PacketRule(40, "172.16.0.0/12", "0.0.0.0/0", 0, 65535, 53, 53, UDP));
+    PacketClassifier classifier = new PacketClassifier(rules);
+
+    Assert.assertEquals(1, classifier.classifyIndex(ip("10.2.3.4"), ip("192.168.1.9"), 40000, 443, TCP));
+    Assert.assertEquals(0, classifier.classifyIndex(ip("10.2.3.4"), ip("192.168.1.9"), 40000, 443, UDP));
+    Assert.assertEquals(2, classifier.classifyIndex(ip("10.1.3.4"), ip("192.168.1.7"), 40000, 443, TCP));
+    Assert.assertEquals(3, classifier.classifyIndex(ip("172.31.0.1"), ip("8.8.8.8"), 5353, 53, UDP));
+    Assert.assertEquals(0, classifier.classifyIndex(ip("172.32.0.1"), ip("8.8.8.8"), 5353, 53, UDP));
+    Assert.assertEquals(rules.get(1), classifier.classify(ip("10.2.3.4"), ip("192.168.1.9"), 40000, 443, TCP));
+}
+
+/**
+ *
+ * Method: classify(int source, int destination, int sourcePort, int destinationPort, int protocol)
+ * Nothing matches without a default rule, and equal priorities go to the earlier rule.
+ */
+@Test
+public void testClassifyNoMatchAndTies() throws Exception
+{
+    PacketClassifier classifier = new PacketClassifier(Arrays.asList(
+            new PacketRule(5, "200.0.0.0/8", "0.0.0.0/0", 0, 65535, 0, 65535, TCP),
+            new PacketRule(5, "200.1.0.0/16", "0.0.0.0/0", 0, 65535, 0, 65535, TCP)));
+
+    Assert.assertNull(classifier.classify(ip("10.0.0.1"), ip("10.0.0.2"), 1, 2, TCP));
+    Assert.assertEquals(0, classifier.classifyIndex(ip("200.1.0.1"), ip("10.0.0.2"), 1, 2, TCP));
+    Assert.assertEquals(-1, new PacketClassifier(new ArrayList<PacketRule>()).classifyIndex(1, 2, 3, 4, TCP));
+}
+
+/**
+ *
+ * Method: PacketRule(...)
+ * Port ranges and protocols outside their fields are rejected.
+ */
+@Test
+public void testRuleValidation() throws Exception
+{
+    int[][] badPortsAndProtocols = {
+            { -1, 10, 0, 65535, TCP },
+            { 0, 65536, 0, 65535, TCP },
+            { 0, 65535, 90, 80, TCP },
+            { 0, 65535, 0, 65535, -5 },
+            { 0, 65535, 0, 65535, 300 } };
+    for (int[] bad : badPortsAndProtocols)
+    {
+        try
+        {
+            new PacketRule(1, "10.0.0.0/8", "0.0.0.0/0", bad[0], bad[1], bad[2], bad[3], bad[4]);
+            Assert.fail("accepted " + Arrays.toString(bad));
+        }
+        catch (IllegalArgumentException expected)
+        {
+        }
+    }
+    Assert.assertEquals(255, new PacketRule(1, "10.0.0.0/8", "0.0.0.0/0", 0, 65535, 0, 65535, 255).getProtocol());
+}
+
+/**
+ *
+ * Method: classify(int[] sources, int[] destinations, int[] sourcePorts, int[] destinationPorts, int[] protocols, int[] results)
+ * Random rules and packets must give the same answers as checking every rule in order.
+ */
+@Test
+public void testBulkClassifyMatchesLinearScan() throws Exception
+{
+    Random random = new Random(42);
+    List<PacketRule> rules = randomRules(random, 2000);
+    PacketClassifier classifier = new PacketClassifier(rules);
+
+    int count = 20000;
+    int[] sources = new int[count];
+    int[] destinations = new int[count];
+    int[] sourcePorts = new int[count];
+    int[] destinationPorts = new int[count];
+    int[] protocols = new int[count];
+    for (int i = 0; i < count; i++)
+    {
+        PacketRule near = rules.get(random.nextInt(rules.size()));
+        sources[i] = near.getSourceAddress() | (random.nextInt() >>> near.getSourcePrefixLength() >>> 1);
+        destinations[i] = near.getDestinationAddress() | (random.nextInt() & 0xFF);
+        sourcePorts[i] = random.nextInt(65536);
+        destinationPorts[i] = random.nextInt(2048);
+        protocols[i] = random.nextBoolean() ? TCP : UDP;
+    }
+    int[] results = new int[count];
+    classifier.classify(sources, destinations, sourcePorts, destinationPorts, protocols, results);
+
+    for (int i = 0; i < count; i++)
+    {
+        int expected = -1;
+        for (int r = 0; r < rules.size(); r++)
+        {
+            if(rules.get(r).matches(sources[i], destinations[i], sourcePorts[i], destinationPorts[i], protocols[i])
+                    && (expected < 0 || rules.get(r).getPriority() > rules.get(expected).getPriority()))
+            {
+                expected = r;
+            }
+        }
+        Assert.assertEquals("packet " + i, expected, results[i]);
+    }
+}
+
+static List<PacketRule> randomRules(Random random, int count)
+{
+    int[] lengths = { 0, 8, 12, 16, 20, 24, 28, 32 };
+    List<PacketRule> rules = new ArrayList<>(count);
+    for (int i = 0; i < count; i++)
+    {
+        int sourceLength = lengths[random.nextInt(lengths.length)];
+        int destinationLength = lengths[random.nextInt(lengths.length)];
+        int sourcePort = random.nextInt(65536);
+        int destinationPort = random.nextInt(1024);
+        rules.add(new PacketRule(random.nextInt(1000),
+                random.nextInt(), sourceLength, random.nextInt(), destinationLength,
+                random.nextBoolean() ? 0 : sourcePort, random.nextBoolean() ? 65535 : sourcePort,
+                destinationPort, destinationPort + random.nextInt(1024),
+                random.nextInt(4) == 0 ? PacketRule.ANY_PROTOCOL : (random.nextBoolean() ? TCP : UDP)));
+    }
+    return rules;
+}
+
+private static int ip(String address)
+{
+    return IPv4Util.parseAddress(address);
+}
+
+}
@@ -0,0 +1,97 @@
+package io.github.a2937.subnetcalc;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the time from starting a new JVM running the
+ * command line until it prints its first result.
+ * Runs without and with the class data sharing archive made by
+ * the cdsArchive Gradle task take turns, so both see the same
+ * machine conditions.
+ * <p>
+ * Arguments: the jar, the archive and optionally the amount of runs.
+ * Run it through {@code gradle startupBenchmark}.
+ */
+public class StartupBenchmark
+{
+    public static void main(String[] args) throws Exception
+    {
+        if(args.length < 2)
+        {
+            System.err.println("Usage: StartupBenchmark <jar> <archive> [runs]");
+            System.exit(2);
+        }
+        String jar = args[0];
+        String archive = args[1];
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+        String[] plain = { java, "-Xshare:auto", "-jar", jar, "network", "192.168.0.2", "24" };
+        String[] appCds = { java, "-XX:SharedArchiveFile=" + archive, "-jar", jar, "network", "192.168.0.2", "24" };
+        boolean haveArchive = new File(archive).isFile();
+
+        // The first runs warm the file system cache and are not counted.
+        timeToFirstResult(plain);
+        if(haveArchive)
+        {
+            timeToFirstResult(appCds);
+        }
+        long[] plainTimes = new long[runs];
+        long[] appCdsTimes = new long[runs];
+        for (int i = 0; i < runs; i++)
+        {
+            // Alternate which mode goes first so neither always follows the other.
+            if(haveArchive && i % 2 == 1)
+            {
+                appCdsTimes[i] = timeToFirstResult(appCds);
+            }
+            plainTimes[i] = timeToFirstResult(plain);
+            if(haveArchive && i % 2 == 0)
+            {
+                appCdsTimes[i] = timeToFirstResult(appCds);
+            }
+        }
+
+        report("default", plainTimes);
+        if(haveArchive)
+        {
+            report("appcds", appCdsTimes);
+        }
+        else
+        {
+            System.out.println("appcds: skipped, " + archive + " does not exist");
+        }
+    }
+
+    private static long timeToFirstResult(String... command) throws Exception
+    {
+        List<String> arguments = new ArrayList<>(Arrays.asList(command));
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(arguments).redirectErrorStream(true).start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream())))
+        {
+            String line = reader.readLine();
+            long elapsed = System.nanoTime() - start;
+            if(line == null || !line.equals("192.168.0.0"))
+            {
+                throw new IllegalStateException("Unexpected output: " + line);
+            }
+            process.waitFor();
+            return elapsed;
+        }
+    }
+
+    private static void report(String name, long[] times)
+    {
+        long[] sortedTimes = times.clone();
+        Arrays.sort(sortedTimes);
+        System.out.printf("%s: min %.2f ms, median %.2f ms, max %.2f ms over %d runs%n", name,
+                sortedTimes[0] / 1e6, sortedTimes[sortedTimes.length / 2] / 1e6,
+                sortedTimes[sortedTimes.length - 1] / 1e6, sortedTimes.length);
+    }
+}
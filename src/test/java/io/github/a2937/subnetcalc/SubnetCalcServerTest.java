@@ -0,0 +1,173 @@
+package io.github.a2937.subnetcalc;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * SubnetCalcServer Tester.
+ * Every test talks to a server on the loopback address.
+ */
+public class SubnetCalcServerTest {
+
+private SubnetCalcServer server;
+
+@Before
+public void before() throws Exception
+{
+    server = new SubnetCalcServer(0);
+}
+
+@After
+public void after() throws Exception
+{
+    server.close();
+}
+
+/**
+ *
+ * Method: handleRequest(String line)
+ * The commands should give the same answers as SubnetCalcUtil.
+ */
+@Test
+public void testHandleRequest() throws Exception
+{
+    Assert.assertEquals("OK 192.168.0.0", SubnetCalcServer.handleRequest("NETWORK 192.168.0.2 24"));
+    Assert.assertEquals("OK 192.168.0.0", SubnetCalcServer.handleRequest("network 192.168.0.2 255.255.255.0"));
+    Assert.assertEquals("OK 192.168.0.255", SubnetCalcServer.handleRequest("BROADCAST 192.168.0.2 24"));
+    Assert.assertEquals("OK true", SubnetCalcServer.handleRequest("CONTAINS 192.168.0.0/24 192.168.0.9"));
+    Assert.assertEquals("OK false", SubnetCalcServer.handleRequest("CONTAINS 192.168.0.0/24 192.168.1.9"));
+    Assert.assertEquals("OK 128.42.5.0/25", SubnetCalcServer.handleRequest("SUMMARIZE 128.42.5.17 128.42.5.67"));
+    Assert.assertEquals("OK 0.0.0.0/0", SubnetCalcServer.handleRequest("SUMMARIZE 1.0.0.0 200.0.0.0"));
+    Assert.assertEquals("OK true", SubnetCalcServer.handleRequest("CONTAINS 0.0.0.0/0 1.2.3.4"));
+    Assert.assertEquals("OK 0.0.0.0", SubnetCalcServer.handleRequest("NETWORK 200.1.2.3 0"));
+}
+
+/**
+ *
+ * Method: handleRequest(String line)
+ * Bad input is answered with an error line instead of an exception.
+ */
+@Test
+public void testHandleRequestErrors() throws Exception
+{
+    Assert.assertTrue(SubnetCalcServer.handleRequest("PING").startsWith("ERR"));
+    Assert.assertTrue(SubnetCalcServer.handleRequest("NETWORK 192.168.0.2").startsWith("ERR"));
+    Assert.assertTrue(SubnetCalcServer.handleRequest("NETWORK 192.168.0.2 33").startsWith("ERR"));
+    Assert.assertTrue(SubnetCalcServer.handleRequest("CONTAINS 192.168.0.0 192.168.0.9").startsWith("ERR"));
+    Assert.assertTrue(SubnetCalcServer.handleRequest("NETWORK 1.2.3 24").startsWith("ERR"));
+    Assert.assertTrue(SubnetCalcServer.handleRequest("CONTAINS 10.0.0.0/8 1.2").startsWith("ERR"));
+    Assert.assertTrue(SubnetCalcServer.handleRequest("SUMMARIZE 1.0.0.0 200.0.0").startsWith("ERR"));
+    Assert.assertTrue(SubnetCalcServer.handleRequest("BROADCAST 1.2.3.4 255.0.255.0").startsWith("ERR"));
+    String answer = SubnetCalcServer.handleRequest("NETWORK 999.1.1.1 24");
+    Assert.assertTrue(answer.startsWith("ERR") && answer.contains("999.1.1.1"));
+}
+
+/**
+ *
+ * Pipelined requests on one connection are batched
+ * together and must still be answered in order.
+ */
+@Test
+public void testPipelinedRequests() throws Exception
+{
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort()))
+    {
+        OutputStream out = socket.getOutputStream();
+        out.write(("NETWORK 10.1.2.3 8\n"
+                + "NETWORK 10.1.2.3 16\n"
+                + "NETWORK 10.1.2.3 8\n"
+                + "CONTAINS 10.0.0.0/8 11.0.0.1\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        Assert.assertEquals("OK 10.0.0.0", in.readLine());
+        Assert.assertEquals("OK 10.1.0.0", in.readLine());
+        Assert.assertEquals("OK 10.0.0.0", in.readLine());
+        Assert.assertEquals("OK false", in.readLine());
+
+        out.write("QUIT\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        Assert.assertNull(in.readLine());
+    }
+}
+
+/**
+ *
+ * A long stream of requests is answered in bursts of at most
+ * a batch, and nothing after a QUIT in the same burst is answered.
+ */
+@Test
+public void testLongStreamAndQuit() throws Exception
+{
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort()))
+    {
+        StringBuilder requests = new StringBuilder();
+        int count = SubnetCalcServer.MAX_BATCH_SIZE * 4 + 7;
+        for (int i = 0; i < count; i++)
+        {
+            requests.append("NETWORK 10.").append(i & 0xFF).append(".1.1 16\n");
+        }
+        requests.append("QUIT\nNETWORK 10.0.0.1 8\n");
+        OutputStream out = socket.getOutputStream();
+        out.write(requests.toString().getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        for (int i = 0; i < count; i++)
+        {
+            Assert.assertEquals("OK 10." + (i & 0xFF) + ".0.0", in.readLine());
+        }
+        Assert.assertNull(in.readLine());
+    }
+}
+
+/**
+ *
+ * Several clients at once should all get their own answers back.
+ */
+@Test
+public void testConcurrentClients() throws Exception
+{
+    Thread[] clients = new Thread[16];
+    final Throwable[] failure = new Throwable[1];
+    for (int i = 0; i < clients.length; i++)
+    {
+        final int octet = i;
+        clients[i] = new Thread(() ->
+        {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort()))
+            {
+                OutputStream out = socket.getOutputStream();
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                for (int w = 0; w < 50; w++)
+                {
+                    out.write(("NETWORK 10." + octet + ".5.6 16\n").getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    Assert.assertEquals("OK 10." + octet + ".0.0", in.readLine());
+                }
+            }
+            catch (Throwable t)
+            {
+                synchronized (failure)
+                {
+                    failure[0] = t;
+                }
+            }
+        });
+        clients[i].start();
+    }
+    for (Thread client : clients)
+    {
+        client.join();
+    }
+    Assert.assertNull(failure[0]);
+}
+
+}
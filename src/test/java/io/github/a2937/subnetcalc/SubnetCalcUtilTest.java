@@ -7,6 +7,7 @@ import org.junit.After;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.math.BigInteger;
 
 /** 
 * SubnetCalcUtil Tester. 
@@ -62,6 +63,97 @@ public void testGetRequiredSubNetMaskLengthForHosts() throws Exception
     Assert.assertEquals(25,SubnetCalcUtil.getRequiredSubNetMaskLengthForHosts(100));
 } 
 
+/**
+ *
+ * Method: getRequiredSubNetMaskLengthForHosts(int hostsCount)
+ * Powers of two used to be rounded up one bit too far.
+ */
+@Test
+public void testGetRequiredSubNetMaskLengthForHostsPowersOfTwo() throws Exception
+{
+    Assert.assertEquals(29,SubnetCalcUtil.getRequiredSubNetMaskLengthForHosts(8));
+    Assert.assertEquals(29,SubnetCalcUtil.getRequiredSubNetMaskLengthForHosts(5));
+    Assert.assertEquals(22,SubnetCalcUtil.getRequiredSubNetMaskLengthForHosts(1024));
+    Assert.assertEquals(32,SubnetCalcUtil.getRequiredSubNetMaskLengthForHosts(1));
+    Assert.assertEquals(32,SubnetCalcUtil.getRequiredSubNetMaskLengthForHosts(0));
+    try
+    {
+        SubnetCalcUtil.getRequiredSubNetMaskLengthForHosts(-5);
+        Assert.fail("negative hosts");
+    }
+    catch (IPException expected)
+    {
+    }
+}
+
+/**
+ *
+ * Method: getRequiredPrefixLengthForHosts(long hostsCount)
+ * Room is left for the network and broadcast address except for /31 and /32.
+ */
+@Test
+public void testGetRequiredPrefixLengthForHosts() throws Exception
+{
+    Assert.assertEquals(32,SubnetCalcUtil.getRequiredPrefixLengthForHosts(0));
+    Assert.assertEquals(32,SubnetCalcUtil.getRequiredPrefixLengthForHosts(1));
+    Assert.assertEquals(31,SubnetCalcUtil.getRequiredPrefixLengthForHosts(2));
+    Assert.assertEquals(29,SubnetCalcUtil.getRequiredPrefixLengthForHosts(3));
+    Assert.assertEquals(29,SubnetCalcUtil.getRequiredPrefixLengthForHosts(6));
+    Assert.assertEquals(28,SubnetCalcUtil.getRequiredPrefixLengthForHosts(7));
+    Assert.assertEquals(24,SubnetCalcUtil.getRequiredPrefixLengthForHosts(254));
+    Assert.assertEquals(23,SubnetCalcUtil.getRequiredPrefixLengthForHosts(255));
+    Assert.assertEquals(0,SubnetCalcUtil.getRequiredPrefixLengthForHosts(4294967294L));
+    // A /30 and a /31 both hold two hosts, so the smaller /31 is the one picked.
+    for (int prefix = 0; prefix <= 29; prefix++)
+    {
+        Assert.assertEquals(prefix,SubnetCalcUtil.getRequiredPrefixLengthForHosts(SubnetCalcUtil.getUsableHostCount(prefix)));
+    }
+    try
+    {
+        SubnetCalcUtil.getRequiredPrefixLengthForHosts(4294967295L);
+        Assert.fail("too many hosts");
+    }
+    catch (IPException expected)
+    {
+    }
+    Assert.assertArrayEquals(new int[] {25, 31, 16},SubnetCalcUtil.getRequiredPrefixLengthsForHosts(new long[] {100, 2, 65534}));
+}
+
+/**
+ *
+ * Method: getAddressCount(int prefixLength), getUsableHostCount(int prefixLength)
+ */
+@Test
+public void testGetUsableHostCount() throws Exception
+{
+    Assert.assertEquals(4294967296L,SubnetCalcUtil.getAddressCount(0));
+    Assert.assertEquals(4294967294L,SubnetCalcUtil.getUsableHostCount(0));
+    Assert.assertEquals(2147483646L,SubnetCalcUtil.getUsableHostCount(1));
+    Assert.assertEquals(2046,SubnetCalcUtil.getUsableHostCount(21));
+    Assert.assertEquals(2,SubnetCalcUtil.getUsableHostCount(30));
+    Assert.assertEquals(2,SubnetCalcUtil.getUsableHostCount(31));
+    Assert.assertEquals(1,SubnetCalcUtil.getUsableHostCount(32));
+}
+
+/**
+ *
+ * Method: getIPv6AddressCount(int prefixLength), getRequiredIPv6PrefixLengthForHosts(long hostsCount)
+ */
+@Test
+public void testIPv6Sizing() throws Exception
+{
+    Assert.assertEquals(BigInteger.ONE.shiftLeft(128),SubnetCalcUtil.getIPv6AddressCount(0));
+    Assert.assertEquals(BigInteger.ONE.shiftLeft(64),SubnetCalcUtil.getIPv6AddressCount(64));
+    Assert.assertEquals(128,SubnetCalcUtil.getRequiredIPv6PrefixLengthForHosts(1));
+    Assert.assertEquals(127,SubnetCalcUtil.getRequiredIPv6PrefixLengthForHosts(2));
+    Assert.assertEquals(120,SubnetCalcUtil.getRequiredIPv6PrefixLengthForHosts(256));
+    Assert.assertEquals(119,SubnetCalcUtil.getRequiredIPv6PrefixLengthForHosts(257));
+    Assert.assertEquals(65,SubnetCalcUtil.getRequiredIPv6PrefixLengthForHosts(Long.MAX_VALUE));
+    Assert.assertEquals(0,SubnetCalcUtil.getRequiredIPv6PrefixLengthForHosts(BigInteger.ONE.shiftLeft(128)));
+    Assert.assertEquals(64,SubnetCalcUtil.getRequiredIPv6PrefixLengthForHosts(BigInteger.ONE.shiftLeft(64)));
+    Assert.assertArrayEquals(new int[] {128, 120},SubnetCalcUtil.getRequiredIPv6PrefixLengthsForHosts(new long[] {0, 200}));
+}
+
 /** 
  *
  * Method: calculateNetworkAddress(String ipAddress, int netMaskLength)
@@ -96,6 +188,18 @@ public void testGetSubnetMaskFromPrefix() throws Exception
     Assert.assertEquals("255.255.255.000",SubnetCalcUtil.getSubnetMaskFromPrefix(24));
 } 
 
+/**
+ *
+ * Method: getSubnetMaskFromPrefix(int prefixLength)
+ * The lookup table has to match the masks that used to be built bit by bit.
+ */
+@Test
+public void testGetSubnetMaskFromPrefixTable() throws Exception
+{
+    Assert.assertEquals("255.255.255.128",SubnetCalcUtil.getSubnetMaskFromPrefix(25));
+    Assert.assertEquals("128.000.000.000",SubnetCalcUtil.getSubnetMaskFromPrefix(1));
+}
+
 /** 
 * 
 * Method: getMaximumHostsInSubnet(int maskLength) 
@@ -0,0 +1,54 @@
+package io.github.a2937.subnetcalc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * SubnetCalculatorDriver Tester.
+ */
+public class SubnetCalculatorDriverTest {
+
+/**
+ *
+ * Method: run(String[] args)
+ * The command line should agree with the int helpers.
+ */
+@Test
+public void testDriverCommands() throws Exception
+{
+    Assert.assertEquals("192.168.0.0", SubnetCalculatorDriver.run(new String[] { "network", "192.168.0.2", "24" }));
+    Assert.assertEquals("192.168.0.255", SubnetCalculatorDriver.run(new String[] { "broadcast", "192.168.0.2", "255.255.255.0" }));
+    Assert.assertEquals("255.255.255.128", SubnetCalculatorDriver.run(new String[] { "mask", "25" }));
+    Assert.assertEquals("24", SubnetCalculatorDriver.run(new String[] { "prefix", "255.255.255.0" }));
+    Assert.assertEquals("128.42.5.0/25", SubnetCalculatorDriver.run(new String[] { "summarize", "128.42.5.17", "128.42.5.67" }));
+}
+
+/**
+ *
+ * Method: run(String[] args)
+ * Bad amounts of hosts are reported as IPExceptions with a readable message.
+ */
+@Test
+public void testDriverSize() throws Exception
+{
+    Assert.assertEquals("25", SubnetCalculatorDriver.run(new String[] { "size", "100" }));
+    try
+    {
+        SubnetCalculatorDriver.run(new String[] { "size", "abc" });
+        Assert.fail("abc is not an amount of hosts");
+    }
+    catch (IPException expected)
+    {
+        Assert.assertTrue(expected.getMessage().startsWith("abc is not an amount of hosts."));
+    }
+    try
+    {
+        SubnetCalculatorDriver.run(new String[] { "size", "-1" });
+        Assert.fail("negative hosts");
+    }
+    catch (IPException expected)
+    {
+    }
+}
+
+}
@@ -0,0 +1,70 @@
+package io.github.a2937.subnetcalc;
+
+import java.util.Random;
+
+/**
+ * Measures recordAndCount calls per second across threads,
+ * counting per /24 and /16 over a 60 second window.
+ * Addresses are skewed so some subnets are much busier than others,
+ * and the quiet ones come from 32768 /24s so they all fit in the
+ * default maximum capacity. Updates the counter dropped are reported
+ * and left out of the rate.
+ * <p>
+ * Arguments: optionally the amount of threads and updates per thread.
+ * Run it through {@code gradle rateCounterBenchmark}.
+ */
+public class SubnetRateCounterBenchmark
+{
+    public static void main(String[] args) throws InterruptedException
+    {
+        int threadCount = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int updates = args.length > 1 ? Integer.parseInt(args[1]) : 5000000;
+        SubnetRateCounter counter = new SubnetRateCounter(new int[] { 24, 16 }, 60000, 12);
+
+        int[][] addresses = new int[threadCount][updates];
+        for (int t = 0; t < threadCount; t++)
+        {
+            Random random = new Random(t);
+            for (int i = 0; i < updates; i++)
+            {
+                // Half the traffic comes from 256 busy /24s, the rest from 32768 /24s spread over all /16s.
+                addresses[t][i] = random.nextBoolean() ? 0xC6336400 + (random.nextInt(256) << 8) + random.nextInt(256)
+                        : (random.nextInt(1 << 15) * 0x20B01) << 8 | random.nextInt(256);
+            }
+        }
+
+        for (int round = 0; round < 3; round++)
+        {
+            Thread[] threads = new Thread[threadCount];
+            for (int t = 0; t < threadCount; t++)
+            {
+                final int[] mine = addresses[t];
+                threads[t] = new Thread(() ->
+                {
+                    long[] counts = new long[2];
+                    for (int address : mine)
+                    {
+                        counter.recordAndCount(address, counts);
+                    }
+                });
+            }
+            long droppedBefore = counter.getDroppedUpdates();
+            long start = System.nanoTime();
+            for (Thread thread : threads)
+            {
+                thread.start();
+            }
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long dropped = counter.getDroppedUpdates() - droppedBefore;
+            // Every call updates both prefix lengths, a dropped update only misses one of them.
+            double counted = (double) updates * threadCount - dropped / 2.0;
+            System.out.printf("Round %d: %.2f million counted updates/s on %d threads, %d of %d level updates dropped, "
+                            + "%d /24s tracked, busiest %s%n", round + 1, counted / seconds / 1e6, threadCount,
+                    dropped, 2L * updates * threadCount, counter.getTrackedSubnetCount(24), counter.topK(24, 1));
+        }
+    }
+}
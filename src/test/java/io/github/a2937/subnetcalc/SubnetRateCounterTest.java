@@ -0,0 +1,341 @@
+package io.github.a2937.subnetcalc;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SubnetRateCounter Tester.
+ * A fake clock moves time forward by hand.
+ */
+public class SubnetRateCounterTest {
+
+private AtomicLong now;
+private SubnetRateCounter counter;
+
+@Before
+public void before() throws Exception
+{
+    now = new AtomicLong(1000000);
+    counter = new SubnetRateCounter(new int[] { 24, 16 }, 60000, 6, 16, 1 << 16, now::get, Runnable::run);
+}
+
+/**
+ *
+ * Method: record(int address), count(int address, int prefixLength)
+ * Every request counts towards its /24 and its /16.
+ */
+@Test
+public void testCountsPerPrefixLength() throws Exception
+{
+    counter.record(IPv4Util.parseAddress("10.1.2.3"));
+    counter.record(IPv4Util.parseAddress("10.1.2.200"));
+    counter.record(IPv4Util.parseAddress("10.1.3.1"));
+    counter.record(IPv4Util.parseAddress("200.1.3.1"));
+
+    Assert.assertEquals(2, counter.count(IPv4Util.parseAddress("10.1.2.0"), 24));
+    Assert.assertEquals(1, counter.count(IPv4Util.parseAddress("10.1.3.0"), 24));
+    Assert.assertEquals(3, counter.count(IPv4Util.parseAddress("10.1.0.0"), 16));
+    Assert.assertEquals(1, counter.count(IPv4Util.parseAddress("200.1.255.255"), 16));
+    Assert.assertEquals(0, counter.count(IPv4Util.parseAddress("10.2.0.0"), 16));
+}
+
+/**
+ *
+ * Method: recordAndCount(int address, long[] counts)
+ * Requests older than the window stop counting.
+ */
+@Test
+public void testSlidingWindow() throws Exception
+{
+    int address = IPv4Util.parseAddress("192.168.7.9");
+    long[] counts = new long[2];
+    counter.recordAndCount(address, counts);
+    Assert.assertArrayEquals(new long[] { 1, 1 }, counts);
+
+    now.addAndGet(30000);
+    counter.recordAndCount(address, counts);
+    Assert.assertArrayEquals(new long[] { 2, 2 }, counts);
+
+    now.addAndGet(30000);
+    Assert.assertEquals(1, counter.count(address, 24));
+
+    now.addAndGet(30000);
+    Assert.assertEquals(0, counter.count(address, 16));
+    counter.recordAndCount(address, counts);
+    Assert.assertArrayEquals(new long[] { 1, 1 }, counts);
+}
+
+/**
+ *
+ * Method: topK(int prefixLength, int k)
+ */
+@Test
+public void testTopK() throws Exception
+{
+    for (int subnet = 1; subnet <= 20; subnet++)
+    {
+        for (int i = 0; i < subnet; i++)
+        {
+            counter.record(IPv4Util.parseAddress("172.16." + subnet + "." + i));
+        }
+    }
+    List<SubnetRateCounter.SubnetCount> busiest = counter.topK(24, 3);
+    Assert.assertEquals(3, busiest.size());
+    Assert.assertEquals("172.16.20.0/24=20", busiest.get(0).toString());
+    Assert.assertEquals("172.16.19.0/24=19", busiest.get(1).toString());
+    Assert.assertEquals("172.16.18.0/24=18", busiest.get(2).toString());
+    Assert.assertEquals(210, counter.topK(16, 5).get(0).getCount());
+}
+
+/**
+ *
+ * Quiet subnets are dropped when a crowded table is rebuilt
+ * and busy ones keep their counts while it grows.
+ */
+@Test
+public void testTablesGrowAndForget() throws Exception
+{
+    for (int subnet = 0; subnet < 1000; subnet++)
+    {
+        counter.record(subnet << 8);
+    }
+    Assert.assertEquals(1, counter.count(999 << 8, 24));
+    Assert.assertEquals(1, counter.count(0, 24));
+    Assert.assertEquals(1000, counter.getTrackedSubnetCount(24));
+
+    // Filling the table again forces a rebuild that leaves the expired subnets behind.
+    now.addAndGet(120000);
+    for (int subnet = 5000; subnet < 6000; subnet++)
+    {
+        counter.record(subnet << 8);
+    }
+    Assert.assertEquals(0, counter.count(0, 24));
+    Assert.assertEquals(1, counter.count(5050 << 8, 24));
+    Assert.assertEquals(1000, counter.getTrackedSubnetCount(24));
+}
+
+/**
+ *
+ * Method: getDroppedUpdates()
+ * A table at its maximum capacity stops taking new subnets
+ * but keeps counting the ones it has.
+ */
+@Test
+public void testMaximumCapacity() throws Exception
+{
+    SubnetRateCounter counter = new SubnetRateCounter(new int[] { 24 }, 60000, 6, 16, 64, now::get, Runnable::run);
+    for (int subnet = 0; subnet < 1000; subnet++)
+    {
+        counter.record(subnet << 8);
+    }
+    Assert.assertEquals(48, counter.getTrackedSubnetCount(24));
+    Assert.assertEquals(1000 - 48, counter.getDroppedUpdates());
+    Assert.assertEquals(0, counter.count(999 << 8, 24));
+
+    long[] counts = new long[1];
+    counter.recordAndCount(0, counts);
+    Assert.assertEquals(2, counts[0]);
+
+    // Once the old subnets go quiet a rebuild makes room again.
+    now.addAndGet(120000);
+    counter.record(999 << 8);
+    counter.record(999 << 8);
+    Assert.assertEquals(1, counter.count(999 << 8, 24));
+}
+
+/**
+ *
+ * Short prefix lengths always have room for every network,
+ * however small the maximum capacity is.
+ */
+@Test
+public void testShortPrefixesNeverDrop() throws Exception
+{
+    SubnetRateCounter counter = new SubnetRateCounter(new int[] { 12 }, 60000, 6, 16, 64, now::get, Runnable::run);
+    for (int network = 0; network < 1 << 12; network++)
+    {
+        counter.record(network << 20);
+    }
+    Assert.assertEquals(1 << 12, counter.getTrackedSubnetCount(12));
+    Assert.assertEquals(0, counter.getDroppedUpdates());
+    Assert.assertEquals(1, counter.count(-1, 12));
+}
+
+/**
+ *
+ * Rebuilds are handed to the executor instead of
+ * running on the thread that records.
+ */
+@Test
+public void testRebuildRunsOnExecutor() throws Exception
+{
+    List<Runnable> rebuilds = new ArrayList<>();
+    SubnetRateCounter counter = new SubnetRateCounter(new int[] { 24 }, 60000, 6, 16, 1024, now::get, rebuilds::add);
+    for (int subnet = 0; subnet < 13; subnet++)
+    {
+        counter.record(subnet << 8);
+    }
+    Assert.assertEquals(1, rebuilds.size());
+    Assert.assertEquals(13, counter.getTrackedSubnetCount(24));
+
+    now.addAndGet(120000);
+    counter.record(100 << 8);
+    Assert.assertEquals(1, rebuilds.size());
+    Assert.assertEquals(14, counter.getTrackedSubnetCount(24));
+
+    rebuilds.remove(0).run();
+    Assert.assertEquals(1, counter.getTrackedSubnetCount(24));
+    Assert.assertEquals(1, counter.count(100 << 8, 24));
+    Assert.assertEquals(0, counter.count(0, 24));
+    Assert.assertTrue(rebuilds.isEmpty());
+}
+
+/**
+ *
+ * A table that fills up before its rebuild has run
+ * grows on the recording thread instead of dropping.
+ */
+@Test
+public void testFullTableGrowsInline() throws Exception
+{
+    List<Runnable> rebuilds = new ArrayList<>();
+    SubnetRateCounter counter = new SubnetRateCounter(new int[] { 24 }, 60000, 6, 16, 1024, now::get, rebuilds::add);
+    for (int subnet = 0; subnet < 20; subnet++)
+    {
+        counter.record(subnet << 8);
+    }
+    Assert.assertEquals(0, counter.getDroppedUpdates());
+    Assert.assertEquals(20, counter.getTrackedSubnetCount(24));
+
+    // The queued rebuild finds its table already replaced.
+    rebuilds.remove(0).run();
+    Assert.assertEquals(20, counter.getTrackedSubnetCount(24));
+    for (int subnet = 0; subnet < 20; subnet++)
+    {
+        Assert.assertEquals(1, counter.count(subnet << 8, 24));
+    }
+}
+
+/**
+ *
+ * Bursts of new subnets recorded by several threads while rebuilds
+ * run on another thread are neither dropped nor lost.
+ */
+@Test
+public void testAsyncRebuildsLoseNothing() throws Exception
+{
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try
+    {
+        SubnetRateCounter perSixteen = new SubnetRateCounter(new int[] { 16 }, 60000, 6, 16, 1 << 16, now::get, executor);
+        SubnetRateCounter perTwentyFour = new SubnetRateCounter(new int[] { 24 }, 60000, 6, 16, 1 << 16, now::get, executor);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            final int offset = t;
+            threads[t] = new Thread(() ->
+            {
+                for (int round = 0; round < 2; round++)
+                {
+                    for (int network = offset; network < 1 << 16; network += threads.length)
+                    {
+                        perSixteen.record(network << 16);
+                        if(network < 20000)
+                        {
+                            perTwentyFour.record(network << 8);
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        Assert.assertEquals(0, perSixteen.getDroppedUpdates());
+        Assert.assertEquals(0, perTwentyFour.getDroppedUpdates());
+        Assert.assertEquals(1 << 16, perSixteen.getTrackedSubnetCount(16));
+        Assert.assertEquals(20000, perTwentyFour.getTrackedSubnetCount(24));
+        for (int network = 0; network < 1 << 16; network++)
+        {
+            Assert.assertEquals(2, perSixteen.count(network << 16, 16));
+            if(network < 20000)
+            {
+                Assert.assertEquals(2, perTwentyFour.count(network << 8, 24));
+            }
+        }
+    }
+    finally
+    {
+        executor.shutdownNow();
+    }
+}
+
+/**
+ *
+ * Method: topK(int prefixLength, int k)
+ * A negative amount of subnets is rejected.
+ */
+@Test
+public void testTopKRejectsNegativeK() throws Exception
+{
+    try
+    {
+        counter.topK(24, -1);
+        Assert.fail("accepted -1");
+    }
+    catch (IllegalArgumentException expected)
+    {
+    }
+    Assert.assertTrue(counter.topK(24, 0).isEmpty());
+}
+
+/**
+ *
+ * Several threads recording at once should lose nothing
+ * once the tables are large enough not to be rebuilt.
+ */
+@Test
+public void testConcurrentRecords() throws Exception
+{
+    SubnetRateCounter counter = new SubnetRateCounter(new int[] { 24, 16 }, 60000, 6, 1024, 1024, now::get, Runnable::run);
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++)
+    {
+        final int offset = t;
+        threads[t] = new Thread(() ->
+        {
+            for (int i = 0; i < 100000; i++)
+            {
+                counter.record(0x0A000000 | ((i + offset) % 64) << 8 | offset);
+            }
+        });
+        threads[t].start();
+    }
+    for (Thread thread : threads)
+    {
+        thread.join();
+    }
+    Assert.assertEquals(800000, counter.count(0x0A000000, 16));
+    long total = 0;
+    for (SubnetRateCounter.SubnetCount subnet : counter.topK(24, 100))
+    {
+        total += subnet.getCount();
+    }
+    Assert.assertEquals(800000, total);
+    Assert.assertEquals(0, counter.getDroppedUpdates());
+}
+
+}